@@ -0,0 +1,37 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// streaming decoding of a listing with Gson, dates included (ZonedDateTimeDeserializer)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DecodingBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  int packageCount;
+
+  byte[] json;
+
+  @Setup
+  public void setUp() {
+    json = SyntheticRepository.json(packageCount);
+  }
+
+  @Benchmark
+  public void decodePackages(Blackhole blackhole) throws IOException {
+    Utils.decodePackages(new ByteArrayInputStream(json), blackhole::consume);
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// the reference keep_last_minor_patches planning, with the versions already parsed
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MinorPatchBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  int versionCount;
+
+  List<String> versions;
+  VersionKeys versionKeys;
+  String latestMinor;
+
+  @Setup
+  public void setUp() {
+    versions = SyntheticRepository.versions(versionCount);
+    versionKeys = new VersionKeys();
+    versions.forEach(versionKeys::get);
+    latestMinor = ReferencePlanning.latestMinor(versions, versionKeys);
+  }
+
+  @Benchmark
+  public String latestMinor() {
+    return ReferencePlanning.latestMinor(versions, versionKeys);
+  }
+
+  @Benchmark
+  public List<String> lastMinorPatches() {
+    return ReferencePlanning.lastMinorPatches(latestMinor, versions, versionKeys);
+  }
+}
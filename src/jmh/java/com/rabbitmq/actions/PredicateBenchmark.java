@@ -0,0 +1,59 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.*;
+
+// globs and version_filter on all the packages of a listing, one predicate per run like the action
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PredicateBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  int packageCount;
+
+  // a simple glob, then a glob left to the JDK matcher
+  @Param({"erlang-26*.rpm", "erlang-2[56]*.rpm"})
+  String globs;
+
+  // a literal filter, then a real regex
+  @Param({"^26\\.", "^2[56]\\."})
+  String versionFilter;
+
+  List<Domain.Package> packages;
+
+  @Setup
+  public void setUp() {
+    packages = SyntheticRepository.packages(packageCount);
+  }
+
+  @Benchmark
+  public int globPredicate() {
+    return count(Utils.globPredicate(globs));
+  }
+
+  @Benchmark
+  public int versionPredicate() {
+    return count(Utils.versionPredicate(versionFilter));
+  }
+
+  private int count(Predicate<Domain.Package> predicate) {
+    int count = 0;
+    for (Domain.Package p : packages) {
+      if (predicate.test(p)) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
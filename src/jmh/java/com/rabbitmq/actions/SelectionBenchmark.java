@@ -0,0 +1,54 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.Domain.PackageVersion;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// sort + limit (the reference planning) against bounded heap selection (selectForDeletion)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SelectionBenchmark {
+
+  // versions, not packages: the selection works on one entry per version
+  @Param({"10000", "100000", "1000000"})
+  int versionCount;
+
+  @Param({"3"})
+  int keepLastN;
+
+  @Param({"true", "false"})
+  boolean orderByVersion;
+
+  List<PackageVersion> versions;
+  VersionKeys versionKeys;
+
+  @Setup
+  public void setUp() {
+    versions = SyntheticRepository.packageVersions(versionCount);
+    versionKeys = new VersionKeys();
+    // versions parsed once in the action, leaving only the comparisons to measure
+    versions.forEach(v -> versionKeys.get(v.version));
+  }
+
+  @Benchmark
+  public List<String> sortAndLimit() {
+    return ReferencePlanning.filterForDeletion(
+        versions, keepLastN, orderByVersion, versionKeys);
+  }
+
+  @Benchmark
+  public List<String> boundedHeap() {
+    return PackagecloudDeletePackageAction.selectForDeletion(
+        versions, keepLastN, orderByVersion, versionKeys);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// parsing and comparison of versions, ComparableVersion against the keys of VersionKeys
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class VersionBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  int versionCount;
+
+  List<String> versions;
+  ComparableVersion[] comparableVersions;
+  VersionKeys.VersionKey[] versionKeys;
+
+  @Setup
+  public void setUp() {
+    versions = SyntheticRepository.versions(versionCount);
+    comparableVersions =
+        versions.stream().map(ComparableVersion::new).toArray(ComparableVersion[]::new);
+    VersionKeys keys = new VersionKeys();
+    versionKeys = versions.stream().map(keys::get).toArray(VersionKeys.VersionKey[]::new);
+  }
+
+  @Benchmark
+  public void parseComparableVersion(Blackhole blackhole) {
+    for (String version : versions) {
+      blackhole.consume(new ComparableVersion(version));
+    }
+  }
+
+  @Benchmark
+  public ComparableVersion[] sortComparableVersions() {
+    ComparableVersion[] sorted = comparableVersions.clone();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  @Benchmark
+  public VersionKeys parseVersionKeys() {
+    VersionKeys keys = new VersionKeys();
+    for (String version : versions) {
+      keys.get(version);
+    }
+    return keys;
+  }
+
+  @Benchmark
+  public VersionKeys.VersionKey[] sortVersionKeys() {
+    VersionKeys.VersionKey[] sorted = versionKeys.clone();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+final class DeletionEngine implements AutoCloseable {
+
+  static final int DEFAULT_CONCURRENCY = 4;
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  // bounds the number of in-flight deletions, submit() blocks when all permits are taken
+  private final Semaphore permits;
+  private final AtomicInteger succeeded = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  // the first exception thrown by a deletion, the next ones are only counted
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+  DeletionEngine(int concurrency) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("Concurrency must be greater than 0: " + concurrency);
+    }
+    this.permits = new Semaphore(concurrency);
+  }
+
+  void submit(Runnable deletion) {
+    permits.acquireUninterruptibly();
+    try {
+      executor.submit(
+          () -> {
+            try {
+              deletion.run();
+              succeeded.incrementAndGet();
+            } catch (RuntimeException e) {
+              failed.incrementAndGet();
+              failure.compareAndSet(null, e);
+            } finally {
+              permits.release();
+            }
+          });
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  int succeeded() {
+    return succeeded.get();
+  }
+
+  int failed() {
+    return failed.get();
+  }
+
+  RuntimeException failure() {
+    return failure.get();
+  }
+
+  @Override
+  public void close() {
+    // waits for the submitted deletions to complete
+    executor.close();
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+
+// append-only log of the deletions, the intents are synced before the first deletion,
+// the completions are synced in batches: a lost completion means a deletion done twice (404)
+final class DeletionJournal implements AutoCloseable {
+
+  static final int DEFAULT_SYNC_BATCH = 100;
+  static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofSeconds(1);
+
+  // e.g. I<tab>destroy_url<tab>package_url<tab>filename<tab>version
+  private static final String REPOSITORY = "R";
+  private static final String INTENT = "I";
+  private static final String DELETED = "D";
+  private static final String FAILED = "F";
+
+  private final Path file;
+  private final FileChannel channel;
+  private final List<Domain.Package> pending;
+  // destroy URLs of all the intents, completed or not, guarded by this
+  private final Set<String> intended = new HashSet<>();
+  private final int syncBatch;
+  private final long syncIntervalNanos;
+  private final Metrics metrics;
+  // guarded by this
+  private int unsynced = 0;
+  private long lastSync = System.nanoTime();
+
+  private DeletionJournal(
+      Path file,
+      FileChannel channel,
+      List<Domain.Package> pending,
+      Set<String> intended,
+      int syncBatch,
+      Duration syncInterval,
+      Metrics metrics) {
+    this.file = file;
+    this.channel = channel;
+    this.pending = pending;
+    this.intended.addAll(intended);
+    this.syncBatch = syncBatch;
+    this.syncIntervalNanos = syncInterval.toNanos();
+    this.metrics = metrics;
+  }
+
+  static DeletionJournal open(Path file, String repository, Metrics metrics) {
+    return open(file, repository, DEFAULT_SYNC_BATCH, DEFAULT_SYNC_INTERVAL, metrics);
+  }
+
+  static DeletionJournal open(
+      Path file, String repository, int syncBatch, Duration syncInterval, Metrics metrics) {
+    try {
+      Replay replay = new Replay(Collections.emptyList(), Collections.emptySet(), 0);
+      boolean exists = Files.isRegularFile(file) && Files.size(file) > 0;
+      if (exists) {
+        replay = replay(file, repository);
+      } else {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+      }
+      FileChannel channel =
+          FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      // appending after the last complete record, a torn one would corrupt the next one
+      channel.truncate(replay.length());
+      channel.position(replay.length());
+      DeletionJournal journal =
+          new DeletionJournal(
+              file, channel, replay.pending(), replay.intended(), syncBatch, syncInterval, metrics);
+      if (replay.length() == 0) {
+        journal.append(REPOSITORY + "\t" + repository + "\n");
+        journal.sync();
+      }
+      return journal;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // read-only, e.g. for a run that does not delete, the journal is left for the next run
+  static List<Domain.Package> pending(Path file, String repository) {
+    try {
+      if (!Files.isRegularFile(file) || Files.size(file) == 0) {
+        return Collections.emptyList();
+      }
+      return replay(file, repository).pending();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // the intended deletions not completed by the previous run, in intent order
+  private static Replay replay(Path file, String repository) throws IOException {
+    byte[] content = Files.readAllBytes(file);
+    // the last line is torn if the process died while writing it
+    int length = content.length;
+    while (length > 0 && content[length - 1] != '\n') {
+      length--;
+    }
+    Map<String, Domain.Package> intents = new LinkedHashMap<>();
+    Set<String> intended = new HashSet<>();
+    for (String line : new String(content, 0, length, StandardCharsets.UTF_8).split("\n")) {
+      String[] fields = line.split("\t", -1);
+      switch (fields[0]) {
+        case REPOSITORY -> {
+          if (fields.length < 2 || !fields[1].equals(repository)) {
+            throw new IllegalStateException(
+                "Deletion journal "
+                    + file
+                    + " is for repository "
+                    + (fields.length < 2 ? null : fields[1])
+                    + ", not "
+                    + repository);
+          }
+        }
+        case INTENT -> {
+          if (fields.length == 5) {
+            Domain.Package p = new Domain.Package();
+            p.setDestroyUrl(fields[1]);
+            p.setPackageUrl(fields[2].isEmpty() ? null : fields[2]);
+            p.setFilename(fields[3]);
+            p.setVersion(fields[4].isEmpty() ? null : fields[4]);
+            intents.put(fields[1], p);
+            intended.add(fields[1]);
+          }
+        }
+        case DELETED -> {
+          if (fields.length == 2) {
+            intents.remove(fields[1]);
+          }
+        }
+        default -> {
+          // failures are retried, like the deletions the previous run did not try
+        }
+      }
+    }
+    return new Replay(new ArrayList<>(intents.values()), intended, length);
+  }
+
+  List<Domain.Package> pending() {
+    return pending;
+  }
+
+  // synced at once, before any of the deletions starts
+  synchronized void intend(Collection<Domain.Package> packages) {
+    StringBuilder records = new StringBuilder();
+    for (Domain.Package p : packages) {
+      if (!intended.add(p.destroy_url())) {
+        // e.g. resumed from the journal
+        continue;
+      }
+      records
+          .append(INTENT)
+          .append('\t')
+          .append(p.destroy_url())
+          .append('\t')
+          .append(Objects.toString(p.package_url(), ""))
+          .append('\t')
+          .append(p.filename())
+          .append('\t')
+          .append(Objects.toString(p.version(), ""))
+          .append('\n');
+    }
+    if (!records.isEmpty()) {
+      append(records);
+      sync();
+    }
+  }
+
+  // a failure is recorded too, the next run retries it only if this one does not complete
+  synchronized void completed(PackagecloudLogic.DeletionResult result) {
+    String status = result.status() == PackagecloudLogic.DeletionStatus.FAILED ? FAILED : DELETED;
+    append(status + "\t" + result.p().destroy_url() + "\n");
+    unsynced++;
+    if (unsynced >= syncBatch || System.nanoTime() - lastSync >= syncIntervalNanos) {
+      sync();
+    }
+  }
+
+  private void append(CharSequence records) {
+    try {
+      ByteBuffer buffer = StandardCharsets.UTF_8.encode(records.toString());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void sync() {
+    try {
+      channel.force(false);
+      metrics.count("journal_syncs", 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    unsynced = 0;
+    lastSync = System.nanoTime();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (channel.isOpen()) {
+      try {
+        if (unsynced > 0) {
+          sync();
+        }
+        channel.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // once all the deletions are done, the next run starts from a listing
+  void complete() {
+    close();
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private record Replay(List<Domain.Package> pending, Set<String> intended, long length) {}
+}
@@ -0,0 +1,115 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.RetentionEngine.Retention;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// the decisions of a plan run, applied later by an apply run without listing
+final class DeletionPlan {
+
+  static final int FORMAT = 1;
+
+  static final String DELETE = "delete";
+  static final String KEEP = "keep";
+
+  int format = FORMAT;
+  String repository;
+  ZonedDateTime created_at;
+  List<Entry> packages = new ArrayList<>();
+
+  DeletionPlan() {}
+
+  DeletionPlan(String repository, ZonedDateTime createdAt) {
+    this.repository = repository;
+    this.created_at = createdAt;
+  }
+
+  void add(Domain.Package p, Retention retention) {
+    Entry entry = new Entry();
+    entry.filename = p.filename();
+    entry.version = p.version();
+    entry.decision = retention.decision().delete() ? DELETE : KEEP;
+    entry.reason = retention.reason() == null ? "not kept by any rule" : retention.reason();
+    if (retention.decision().delete()) {
+      // only what the deletion needs, the kept packages are there for the review
+      entry.destroy_url = p.destroy_url();
+      entry.package_url = p.package_url();
+    }
+    packages.add(entry);
+  }
+
+  List<Domain.Package> packagesToDelete() {
+    List<Domain.Package> result = new ArrayList<>();
+    for (Entry entry : packages) {
+      if (DELETE.equals(entry.decision)) {
+        Domain.Package p = new Domain.Package();
+        p.setFilename(entry.filename);
+        p.setVersion(entry.version);
+        p.setDestroyUrl(entry.destroy_url);
+        p.setPackageUrl(entry.package_url);
+        result.add(p);
+      }
+    }
+    return result;
+  }
+
+  static DeletionPlan read(Path file) {
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      DeletionPlan plan = Utils.GSON.fromJson(reader, DeletionPlan.class);
+      if (plan == null || plan.packages == null) {
+        throw new IllegalArgumentException("Empty plan file " + file);
+      } else if (plan.format != FORMAT) {
+        throw new IllegalArgumentException(
+            "Unsupported plan file format " + plan.format + " in " + file);
+      }
+      for (Entry entry : plan.packages) {
+        if (DELETE.equals(entry.decision) && entry.destroy_url == null) {
+          throw new IllegalArgumentException(
+              "No destroy URL for " + entry.filename + " in plan file " + file);
+        }
+      }
+      return plan;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  void write(Path file) {
+    try {
+      Path parent = file.toAbsolutePath().getParent();
+      Files.createDirectories(parent);
+      // write then rename, an apply run never reads a truncated plan
+      Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+      try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+        Utils.GSON.toJson(this, writer);
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static class Entry {
+
+    String filename;
+    String version;
+    String decision;
+    String reason;
+    String destroy_url;
+    String package_url;
+  }
+}
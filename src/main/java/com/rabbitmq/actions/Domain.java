@@ -20,6 +20,7 @@ abstract class Domain {
     private String package_url;
     private String filename;
     private String version;
+    private String distro_version;
 
     Package() {}
 
@@ -31,6 +32,14 @@ abstract class Domain {
       this.version = version;
     }
 
+    public void setDestroyUrl(String destroyUrl) {
+      this.destroy_url = destroyUrl;
+    }
+
+    public void setPackageUrl(String packageUrl) {
+      this.package_url = packageUrl;
+    }
+
     String filename() {
       return this.filename;
     }
@@ -47,6 +56,14 @@ abstract class Domain {
       return created_at;
     }
 
+    public String package_url() {
+      return package_url;
+    }
+
+    public String distro_version() {
+      return distro_version;
+    }
+
     @Override
     public String toString() {
       return "Package{"
@@ -59,6 +76,9 @@ abstract class Domain {
           + ", version='"
           + version
           + '\''
+          + ", distro_version='"
+          + distro_version
+          + '\''
           + ", created_at='"
           + created_at
           + '\''
@@ -92,7 +112,9 @@ abstract class Domain {
     }
 
     void consider(Domain.Package p) {
-      if (lastPackageDate == null) {
+      if (p.created_at() == null) {
+        return;
+      } else if (lastPackageDate == null) {
         lastPackageDate = p.created_at();
       } else {
         lastPackageDate =
@@ -100,4 +122,14 @@ abstract class Domain {
       }
     }
   }
+
+  enum Decision {
+    DELETE,
+    KEEP,
+    KEEP_LATEST_MINOR_PATCH;
+
+    boolean delete() {
+      return this == DELETE;
+    }
+  }
 }
@@ -0,0 +1,176 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+// matches file names against a comma-separated list of globs, compiled once
+final class GlobMatcher {
+
+  private final boolean matchAll;
+  // globs with only literals, * and ?, matched on the characters directly
+  private final SimpleGlob[] simpleGlobs;
+  // other globs (e.g. with [] or {}), left to the JDK
+  private final PathMatcher[] pathMatchers;
+
+  private GlobMatcher(boolean matchAll, List<SimpleGlob> simpleGlobs, List<PathMatcher> others) {
+    this.matchAll = matchAll;
+    this.simpleGlobs = simpleGlobs.toArray(new SimpleGlob[0]);
+    this.pathMatchers = others.toArray(new PathMatcher[0]);
+  }
+
+  static GlobMatcher compile(String globs) {
+    globs = globs == null || globs.isBlank() ? "*" : globs;
+    boolean matchAll = false;
+    List<SimpleGlob> simpleGlobs = new ArrayList<>();
+    List<PathMatcher> others = new ArrayList<>();
+    for (String glob : globs.split(",")) {
+      glob = glob.trim();
+      if (isSimple(glob)) {
+        SimpleGlob simpleGlob = SimpleGlob.compile(glob);
+        matchAll |= simpleGlob.matchesAll();
+        simpleGlobs.add(simpleGlob);
+      } else {
+        others.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+      }
+    }
+    // most selective first: the longest literal suffix rejects most file names
+    simpleGlobs.sort((g1, g2) -> Integer.compare(g2.suffix.length(), g1.suffix.length()));
+    return new GlobMatcher(matchAll, simpleGlobs, others);
+  }
+
+  private static boolean isSimple(String glob) {
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '[' || c == '{' || c == '\\' || c == '/') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  boolean matches(CharSequence name) {
+    if (matchAll) {
+      return true;
+    }
+    // like Path.getFileName(), only the last element of the name
+    int end = name.length();
+    while (end > 1 && name.charAt(end - 1) == '/') {
+      end--;
+    }
+    int start = end;
+    while (start > 0 && name.charAt(start - 1) != '/') {
+      start--;
+    }
+    for (SimpleGlob glob : simpleGlobs) {
+      if (glob.matches(name, start, end)) {
+        return true;
+      }
+    }
+    if (pathMatchers.length > 0) {
+      Path fileName = Path.of(name.toString()).getFileName();
+      for (PathMatcher pathMatcher : pathMatchers) {
+        if (fileName != null && pathMatcher.matches(fileName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // e.g. erlang-*el8*.rpm => prefix erlang-, middle [el8], suffix .rpm
+  private static final class SimpleGlob {
+
+    private final boolean hasStar;
+    private final String prefix;
+    private final String[] middle;
+    private final String suffix;
+    private final int minLength;
+
+    private SimpleGlob(boolean hasStar, String prefix, String[] middle, String suffix) {
+      this.hasStar = hasStar;
+      this.prefix = prefix;
+      this.middle = middle;
+      this.suffix = suffix;
+      int length = prefix.length() + suffix.length();
+      for (String part : middle) {
+        length += part.length();
+      }
+      this.minLength = length;
+    }
+
+    static SimpleGlob compile(String glob) {
+      int firstStar = glob.indexOf('*');
+      if (firstStar < 0) {
+        return new SimpleGlob(false, glob, new String[0], "");
+      }
+      int lastStar = glob.lastIndexOf('*');
+      List<String> middle = new ArrayList<>();
+      for (String part : glob.substring(firstStar, lastStar + 1).split("\\*")) {
+        // ** is the same as * in a file name
+        if (!part.isEmpty()) {
+          middle.add(part);
+        }
+      }
+      return new SimpleGlob(
+          true,
+          glob.substring(0, firstStar),
+          middle.toArray(new String[0]),
+          glob.substring(lastStar + 1));
+    }
+
+    boolean matchesAll() {
+      return hasStar && minLength == 0;
+    }
+
+    boolean matches(CharSequence name, int start, int end) {
+      int length = end - start;
+      if (!hasStar) {
+        return length == prefix.length() && regionMatches(name, start, prefix);
+      }
+      if (length < minLength
+          || !regionMatches(name, end - suffix.length(), suffix)
+          || !regionMatches(name, start, prefix)) {
+        return false;
+      }
+      // leftmost match of each part, the parts have a fixed length
+      int from = start + prefix.length();
+      int to = end - suffix.length();
+      for (String part : middle) {
+        int found = indexOf(name, part, from, to);
+        if (found < 0) {
+          return false;
+        }
+        from = found + part.length();
+      }
+      return true;
+    }
+
+    private static int indexOf(CharSequence name, String part, int from, int to) {
+      for (int i = from; i <= to - part.length(); i++) {
+        if (regionMatches(name, i, part)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    // ? matches any character
+    private static boolean regionMatches(CharSequence name, int offset, String literal) {
+      for (int i = 0; i < literal.length(); i++) {
+        char c = literal.charAt(i);
+        if (c != '?' && c != name.charAt(offset + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
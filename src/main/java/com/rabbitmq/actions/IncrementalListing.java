@@ -0,0 +1,148 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.LogUtils.logGreen;
+import static com.rabbitmq.actions.LogUtils.logYellow;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+// lists only the packages created since the previous run, with a periodic full scan
+final class IncrementalListing {
+
+  static final Duration DEFAULT_FULL_SCAN_INTERVAL = Duration.ofDays(7);
+
+  private final PackagecloudLogic.PackagecloudPackageAccess access;
+  private final Path stateFile;
+  private final String filter;
+  private final Duration fullScanInterval;
+  private State state;
+
+  IncrementalListing(
+      PackagecloudLogic.PackagecloudPackageAccess access,
+      Path stateFile,
+      String filter,
+      Duration fullScanInterval) {
+    this.access = access;
+    this.stateFile = stateFile;
+    this.filter = filter;
+    this.fullScanInterval = fullScanInterval;
+  }
+
+  List<Domain.Package> list() {
+    State previous = load(this.stateFile);
+    ZonedDateTime now = ZonedDateTime.now();
+    List<Domain.Package> packages = null;
+    boolean fullScan = true;
+    if (previous == null) {
+      logGreen("No listing state, listing all the packages");
+    } else if (!this.filter.equals(previous.filter)) {
+      logYellow("Filters changed since the previous run, listing all the packages");
+    } else if (previous.last_full_scan == null
+        || previous.last_full_scan.plus(this.fullScanInterval).isBefore(now)) {
+      logGreen("Full scan interval reached, listing all the packages");
+    } else if (previous.watermark == null) {
+      logGreen("No watermark in listing state, listing all the packages");
+    } else {
+      Optional<List<Domain.Package>> newPackages = this.access.listSince(previous.watermark);
+      if (newPackages.isPresent()) {
+        // known packages first, then the new ones, without duplicates (based on package_url)
+        Set<Domain.Package> merged = new LinkedHashSet<>(previous.packages);
+        merged.addAll(newPackages.get());
+        packages = new ArrayList<>(merged);
+        fullScan = false;
+        logGreen(
+            "Incremental listing: "
+                + previous.packages.size()
+                + " known package(s), "
+                + (packages.size() - previous.packages.size())
+                + " new package(s)");
+      } else {
+        logYellow("Listing not sorted by creation date, listing all the packages");
+      }
+    }
+    if (fullScan) {
+      // reconciles with the repository, packages deleted elsewhere disappear from the state
+      packages = this.access.list();
+    }
+
+    this.state = new State();
+    this.state.filter = this.filter;
+    this.state.last_full_scan = fullScan ? now : previous.last_full_scan;
+    this.state.packages = packages;
+    this.state.watermark =
+        packages.stream()
+            .map(Domain.Package::created_at)
+            .filter(Objects::nonNull)
+            .max(Comparator.naturalOrder())
+            .orElse(previous == null ? null : previous.watermark);
+    save(this.stateFile, this.state);
+    return packages;
+  }
+
+  void forget(Collection<Domain.Package> deleted) {
+    forget(this.stateFile, this.state, deleted);
+  }
+
+  // for deletions without listing, e.g. when applying a plan
+  static void forget(Path stateFile, Collection<Domain.Package> deleted) {
+    forget(stateFile, load(stateFile), deleted);
+  }
+
+  private static void forget(Path stateFile, State state, Collection<Domain.Package> deleted) {
+    if (state != null && !deleted.isEmpty()) {
+      Set<Domain.Package> toRemove = new HashSet<>(deleted);
+      state.packages = state.packages.stream().filter(p -> !toRemove.contains(p)).toList();
+      save(stateFile, state);
+    }
+  }
+
+  static State load(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      State state = Utils.GSON.fromJson(reader, State.class);
+      return state == null || state.packages == null ? null : state;
+    } catch (Exception e) {
+      logYellow("Could not read listing state " + file + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  static void save(Path file, State state) {
+    try {
+      Path parent = file.toAbsolutePath().getParent();
+      Files.createDirectories(parent);
+      // write then rename, so a crash never leaves a truncated state file
+      Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+      try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+        Utils.GSON.toJson(state, writer);
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static class State {
+
+    String filter;
+    ZonedDateTime watermark;
+    ZonedDateTime last_full_scan;
+    List<Domain.Package> packages;
+  }
+}
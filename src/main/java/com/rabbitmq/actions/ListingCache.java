@@ -0,0 +1,173 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// listing pages on disk, revalidated with ETag / Last-Modified,
+// the metadata of a page is written after its body and has the hash of the body
+final class ListingCache {
+
+  // the headers needed to follow the pagination from a cached page
+  private static final List<String> CACHED_HEADERS = List.of("link", "total", "per-page");
+
+  private final Path directory;
+
+  ListingCache(Path directory) {
+    this.directory = directory;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  Optional<Entry> get(URI uri) {
+    String key = key(uri);
+    Path metadataFile = directory.resolve(key + ".meta.json");
+    Path bodyFile = directory.resolve(key + ".json");
+    if (!Files.isRegularFile(metadataFile) || !Files.isRegularFile(bodyFile)) {
+      return Optional.empty();
+    }
+    try {
+      Metadata metadata =
+          Utils.GSON.fromJson(
+              Files.readString(metadataFile, StandardCharsets.UTF_8), Metadata.class);
+      if (metadata == null || !uri.toString().equals(metadata.url)) {
+        return Optional.empty();
+      }
+      // e.g. the body of a newer response, the process died before writing its metadata
+      if (metadata.sha256 == null || !metadata.sha256.equals(sha256(bodyFile))) {
+        return Optional.empty();
+      }
+      return Optional.of(new Entry(metadata, bodyFile));
+    } catch (Exception e) {
+      // corrupted entry, it will be overwritten
+      return Optional.empty();
+    }
+  }
+
+  HttpRequest conditional(HttpRequest request, Entry entry) {
+    HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+    if (entry.metadata.etag != null) {
+      builder.setHeader("If-None-Match", entry.metadata.etag);
+    }
+    if (entry.metadata.last_modified != null) {
+      builder.setHeader("If-Modified-Since", entry.metadata.last_modified);
+    }
+    return builder.build();
+  }
+
+  static boolean isCacheable(HttpResponse<?> response) {
+    return response.statusCode() == 200
+        && (response.headers().firstValue("etag").isPresent()
+            || response.headers().firstValue("last-modified").isPresent());
+  }
+
+  // writes the body to the cache and returns a stream on the cached copy
+  InputStream store(URI uri, HttpResponse<InputStream> response) throws IOException {
+    String key = key(uri);
+    Path bodyFile = directory.resolve(key + ".json");
+    Path metadataFile = directory.resolve(key + ".meta.json");
+    MessageDigest digest = sha256();
+    Path temporary = Files.createTempFile(directory, key, ".tmp");
+    try (InputStream body = new DigestInputStream(response.body(), digest)) {
+      Files.copy(body, temporary, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temporary, bodyFile, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+    Metadata metadata = new Metadata();
+    metadata.url = uri.toString();
+    metadata.sha256 = HexFormat.of().formatHex(digest.digest());
+    metadata.etag = response.headers().firstValue("etag").orElse(null);
+    metadata.last_modified = response.headers().firstValue("last-modified").orElse(null);
+    metadata.headers = new LinkedHashMap<>();
+    for (String header : CACHED_HEADERS) {
+      response.headers().firstValue(header).ifPresent(v -> metadata.headers.put(header, v));
+    }
+    temporary = Files.createTempFile(directory, key, ".tmp");
+    try {
+      Files.writeString(temporary, Utils.GSON.toJson(metadata), StandardCharsets.UTF_8);
+      Files.move(temporary, metadataFile, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+    return Files.newInputStream(bodyFile);
+  }
+
+  private static String key(URI uri) {
+    return HexFormat.of()
+        .formatHex(sha256().digest(uri.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String sha256(Path file) throws IOException {
+    MessageDigest digest = sha256();
+    try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+      in.transferTo(OutputStream.nullOutputStream());
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static final class Entry {
+
+    private final Metadata metadata;
+    private final Path body;
+
+    private Entry(Metadata metadata, Path body) {
+      this.metadata = metadata;
+      this.body = body;
+    }
+
+    InputStream body() throws IOException {
+      return Files.newInputStream(body);
+    }
+
+    HttpHeaders headers() {
+      Map<String, List<String>> headers = new LinkedHashMap<>();
+      if (metadata.headers != null) {
+        metadata.headers.forEach((k, v) -> headers.put(k, List.of(v)));
+      }
+      return HttpHeaders.of(headers, (name, value) -> true);
+    }
+  }
+
+  private static final class Metadata {
+
+    private String url;
+    private String sha256;
+    private String etag;
+    private String last_modified;
+    private Map<String, String> headers;
+  }
+}
@@ -5,8 +5,13 @@
  */
 package com.rabbitmq.actions;
 
+import java.util.function.Supplier;
+
 abstract class LogUtils {
 
+  // prefix of the lines of a thread and the threads it starts, set by prefixed()
+  private static final InheritableThreadLocal<String> PREFIX = new InheritableThreadLocal<>();
+
   private LogUtils() {}
 
   static void logGreen(String message) {
@@ -34,7 +39,27 @@ abstract class LogUtils {
   }
 
   static void log(String message, Object... args) {
-    System.out.printf((message) + "%n", args);
+    String prefix = PREFIX.get();
+    if (prefix == null) {
+      System.out.printf((message) + "%n", args);
+    } else {
+      StringBuilder lines = new StringBuilder();
+      for (String line : String.format(message, args).split("\\R", -1)) {
+        lines.append(prefix).append(line).append(System.lineSeparator());
+      }
+      System.out.print(lines);
+    }
+  }
+
+  // tells apart the lines of concurrent tasks (e.g. repositories in batch mode),
+  // they are printed as they come, a long task does not leave the log empty
+  static <T> T prefixed(String prefix, Supplier<T> task) {
+    PREFIX.set(prefix);
+    try {
+      return task.get();
+    } finally {
+      PREFIX.remove();
+    }
   }
 
   static void newLine() {
@@ -0,0 +1,145 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.util.Arrays;
+
+// packed form of purely numeric versions (e.g. 26.2.5.3-1), compared without allocation
+// with the same semantics as ComparableVersion
+final class NumericVersion {
+
+  // ComparableVersion uses an int item up to 9 digits
+  private static final int MAX_COMPONENT_LENGTH = 9;
+  // starts a sub-list, e.g. the -1 in 26.2.5.3-1
+  private static final int SUB_LIST = -1;
+
+  private NumericVersion() {}
+
+  // e.g. 26.2.5.3-1 => [26, 2, 5, 3, -1, 1], null if the version is not purely numeric
+  static int[] pack(String version) {
+    int length = version.length();
+    if (length == 0) {
+      return null;
+    }
+    int[] packed = new int[length + 1];
+    int size = 0;
+    int value = 0;
+    int digits = 0;
+    for (int i = 0; i <= length; i++) {
+      char c = i == length ? '.' : version.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (++digits > MAX_COMPONENT_LENGTH) {
+          return null;
+        }
+        value = value * 10 + (c - '0');
+      } else if (c == '.' || c == '-') {
+        if (digits == 0) {
+          // empty component, e.g. 1..2 or 1-, left to ComparableVersion
+          return null;
+        }
+        packed[size++] = value;
+        if (c == '-') {
+          packed[size++] = SUB_LIST;
+        }
+        value = 0;
+        digits = 0;
+      } else {
+        return null;
+      }
+    }
+    return normalize(packed, size);
+  }
+
+  // removes trailing zeros and empty sub-lists, innermost list first, like ListItem.normalize()
+  private static int[] normalize(int[] packed, int size) {
+    int levels = 1;
+    for (int i = 0; i < size; i++) {
+      if (packed[i] == SUB_LIST) {
+        levels++;
+      }
+    }
+    int[] starts = new int[levels];
+    int[] ends = new int[levels];
+    for (int i = 0, level = 0; i < size; i++) {
+      if (packed[i] == SUB_LIST) {
+        ends[level++] = i;
+        starts[level] = i + 1;
+      }
+    }
+    ends[levels - 1] = size;
+    // the number of levels left once the empty sub-lists are removed
+    int kept = 0;
+    for (int level = levels - 1; level >= 0; level--) {
+      while (ends[level] > starts[level] && packed[ends[level] - 1] == 0) {
+        ends[level]--;
+      }
+      if (kept == 0 && ends[level] == starts[level]) {
+        continue;
+      }
+      kept = Math.max(kept, level + 1);
+    }
+    int[] normalized = new int[size];
+    int index = 0;
+    for (int level = 0; level < kept; level++) {
+      if (level > 0) {
+        normalized[index++] = SUB_LIST;
+      }
+      int count = ends[level] - starts[level];
+      System.arraycopy(packed, starts[level], normalized, index, count);
+      index += count;
+    }
+    return Arrays.copyOf(normalized, index);
+  }
+
+  static int compare(int[] left, int[] right) {
+    return compareLists(left, 0, right, 0);
+  }
+
+  private static int compareLists(int[] left, int l, int[] right, int r) {
+    while (l < left.length || r < right.length) {
+      boolean leftEnd = l == left.length;
+      boolean rightEnd = r == right.length;
+      if (leftEnd) {
+        // a sub-list is always the last item of its list
+        if (right[r] == SUB_LIST) {
+          return -compareToNull(right, r + 1);
+        } else if (right[r] != 0) {
+          return -1;
+        }
+        r++;
+      } else if (rightEnd) {
+        if (left[l] == SUB_LIST) {
+          return compareToNull(left, l + 1);
+        } else if (left[l] != 0) {
+          return 1;
+        }
+        l++;
+      } else if (left[l] == SUB_LIST) {
+        // 1-1 < 1.0.x
+        return right[r] == SUB_LIST ? compareLists(left, l + 1, right, r + 1) : -1;
+      } else if (right[r] == SUB_LIST) {
+        return 1;
+      } else if (left[l] != right[r]) {
+        return left[l] < right[r] ? -1 : 1;
+      } else {
+        l++;
+        r++;
+      }
+    }
+    return 0;
+  }
+
+  // compares a list to a missing item, using only its first item, like ListItem.compareTo(null)
+  private static int compareToNull(int[] packed, int index) {
+    while (index < packed.length) {
+      if (packed[index] != SUB_LIST) {
+        return packed[index] == 0 ? 0 : 1;
+      }
+      index++;
+    }
+    return 0;
+  }
+}
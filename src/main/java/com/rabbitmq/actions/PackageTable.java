@@ -0,0 +1,274 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.Domain.PackageVersion;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+// the listed packages stored column-wise, with the rows grouped by version and distribution,
+// the packages themselves are not kept, only what the planning and the deletion need
+final class PackageTable {
+
+  // no creation date in the listing
+  static final long NO_DATE = Long.MIN_VALUE;
+  // no distro_version in the listing and none in the file name
+  static final String UNKNOWN_DISTRIBUTION = "unknown";
+
+  private final int size;
+  // columns, one row per package
+  private final String[] filenames;
+  private final int[] versionIds;
+  private final int[] distributionIds;
+  private final long[] createdAt;
+  private final String[] destroyUrls;
+  private final String[] packageUrls;
+  // per version
+  private final Index versions;
+  private final long[] lastCreatedAt;
+  private final int[] minorIds;
+  private final Index minors;
+  private final Index distributions;
+
+  private PackageTable(List<Domain.Package> packages, VersionKeys versionKeys) {
+    this.size = packages.size();
+    this.filenames = new String[size];
+    this.versionIds = new int[size];
+    this.distributionIds = new int[size];
+    this.createdAt = new long[size];
+    this.destroyUrls = new String[size];
+    this.packageUrls = new String[size];
+    this.versions = new Index();
+    this.distributions = new Index();
+    Map<String, String> strings = new HashMap<>();
+    for (int row = 0; row < size; row++) {
+      Domain.Package p = packages.get(row);
+      filenames[row] = intern(strings, p.filename());
+      destroyUrls[row] = p.destroy_url();
+      packageUrls[row] = p.package_url();
+      distributionIds[row] = distributions.id(intern(strings, distribution(p)));
+      versionIds[row] = versions.id(p.version());
+      ZonedDateTime date = p.created_at();
+      createdAt[row] = date == null ? NO_DATE : date.toInstant().toEpochMilli();
+    }
+    this.versions.group(versionIds);
+    this.distributions.group(distributionIds);
+    // NO_DATE is the smallest value, the last date of a version is the maximum
+    this.lastCreatedAt = versions.max(createdAt, NO_DATE);
+    this.minors = new Index();
+    this.minorIds = new int[versions.size()];
+    for (int versionId = 0; versionId < versions.size(); versionId++) {
+      minorIds[versionId] = minors.id(versionKeys.get(versions.key(versionId)).minor());
+    }
+  }
+
+  static PackageTable of(List<Domain.Package> packages, VersionKeys versionKeys) {
+    return new PackageTable(packages, versionKeys);
+  }
+
+  static String distribution(Domain.Package p) {
+    if (p.distro_version() != null && !p.distro_version().isBlank()) {
+      return p.distro_version();
+    }
+    String filename = p.filename() == null ? "" : p.filename();
+    String distribution = null;
+    if (filename.endsWith(".rpm")) {
+      // e.g. erlang-26.2.5-1.el8.x86_64.rpm, el8 at the end of the release
+      String withoutArch = filename.substring(0, filename.length() - 4);
+      int arch = withoutArch.lastIndexOf('.');
+      String release = arch < 0 ? "" : withoutArch.substring(0, arch);
+      release = release.substring(release.lastIndexOf('-') + 1);
+      distribution = release.substring(release.lastIndexOf('.') + 1);
+    } else if (filename.endsWith(".deb")) {
+      // e.g. erlang-base_26.2.5-1~jammy_amd64.deb or erlang-base_26.2.5-1+deb12_amd64.deb
+      int start = filename.indexOf('_');
+      int end = filename.lastIndexOf('_');
+      String version = start < end ? filename.substring(start + 1, end) : "";
+      int separator = Math.max(version.lastIndexOf('~'), version.lastIndexOf('+'));
+      distribution = separator < 0 ? null : version.substring(separator + 1);
+    }
+    if (distribution == null || distribution.chars().noneMatch(Character::isLetter)) {
+      return UNKNOWN_DISTRIBUTION;
+    }
+    return distribution;
+  }
+
+  private static String intern(Map<String, String> strings, String value) {
+    return value == null ? null : strings.computeIfAbsent(value, Function.identity());
+  }
+
+  int size() {
+    return size;
+  }
+
+  // rebuilt from the columns, with only what the plan and the deletion need
+  Domain.Package get(int row) {
+    Domain.Package p = new Domain.Package();
+    p.setFilename(filenames[row]);
+    p.setVersion(version(row));
+    p.setDestroyUrl(destroyUrls[row]);
+    p.setPackageUrl(packageUrls[row]);
+    return p;
+  }
+
+  String filename(int row) {
+    return filenames[row];
+  }
+
+  String version(int row) {
+    return versions.key(versionIds[row]);
+  }
+
+  String distribution(int row) {
+    return distributions.key(distributionIds[row]);
+  }
+
+  int versionCount() {
+    return versions.size();
+  }
+
+  // the latest minor of all the versions, or of the versions of a distribution
+  String latestMinor(String distribution, Comparator<String> comparator) {
+    boolean[] present = new boolean[minors.size()];
+    if (distribution == null) {
+      Arrays.fill(present, true);
+    } else {
+      for (int row : rowsOfDistribution(distribution)) {
+        present[minorIds[versionIds[row]]] = true;
+      }
+    }
+    String latest = null;
+    for (int minorId = 0; minorId < present.length; minorId++) {
+      if (present[minorId]
+          && (latest == null || comparator.compare(minors.key(minorId), latest) > 0)) {
+        latest = minors.key(minorId);
+      }
+    }
+    return latest;
+  }
+
+  List<String> distributions() {
+    return distributions.keys();
+  }
+
+  int[] rowsOfDistribution(String distribution) {
+    int distributionId = distributions.find(distribution);
+    return distributionId < 0 ? new int[0] : distributions.members(distributionId);
+  }
+
+  // the input of the planning, one element per version, in order of appearance
+  List<PackageVersion> packageVersions() {
+    List<PackageVersion> result = new ArrayList<>(versions.size());
+    for (int versionId = 0; versionId < versions.size(); versionId++) {
+      PackageVersion packageVersion = new PackageVersion(versions.key(versionId));
+      packageVersion.lastPackageDate = date(lastCreatedAt[versionId]);
+      result.add(packageVersion);
+    }
+    return result;
+  }
+
+  // the versions of the packages of a distribution, with their dates in this distribution
+  List<PackageVersion> packageVersions(String distribution) {
+    long[] lastDates = new long[versions.size()];
+    boolean[] seen = new boolean[versions.size()];
+    // the version ids in order of appearance in the distribution
+    int[] order = new int[versions.size()];
+    int count = 0;
+    for (int row : rowsOfDistribution(distribution)) {
+      int versionId = versionIds[row];
+      if (!seen[versionId]) {
+        seen[versionId] = true;
+        lastDates[versionId] = createdAt[row];
+        order[count++] = versionId;
+      } else {
+        lastDates[versionId] = Math.max(lastDates[versionId], createdAt[row]);
+      }
+    }
+    List<PackageVersion> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      PackageVersion packageVersion = new PackageVersion(versions.key(order[i]));
+      packageVersion.lastPackageDate = date(lastDates[order[i]]);
+      result.add(packageVersion);
+    }
+    return result;
+  }
+
+  private static ZonedDateTime date(long millis) {
+    return millis == NO_DATE ? null : Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC);
+  }
+
+  // dictionary of keys, with the members of each key grouped by a counting sort
+  private static final class Index {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> keys = new ArrayList<>();
+    private int[] offsets;
+    private int[] members;
+
+    int id(String key) {
+      Integer id = ids.get(key);
+      if (id == null) {
+        id = keys.size();
+        ids.put(key, id);
+        keys.add(key);
+      }
+      return id;
+    }
+
+    int find(String key) {
+      Integer id = ids.get(key);
+      return id == null ? -1 : id;
+    }
+
+    String key(int id) {
+      return keys.get(id);
+    }
+
+    List<String> keys() {
+      return Collections.unmodifiableList(keys);
+    }
+
+    int size() {
+      return keys.size();
+    }
+
+    // column[member] is the id of the key of the member
+    void group(int[] column) {
+      offsets = new int[keys.size() + 1];
+      for (int id : column) {
+        offsets[id + 1]++;
+      }
+      for (int id = 0; id < keys.size(); id++) {
+        offsets[id + 1] += offsets[id];
+      }
+      members = new int[column.length];
+      int[] next = Arrays.copyOf(offsets, keys.size());
+      for (int member = 0; member < column.length; member++) {
+        members[next[column[member]]++] = member;
+      }
+    }
+
+    int[] members(int id) {
+      return Arrays.copyOfRange(members, offsets[id], offsets[id + 1]);
+    }
+
+    // the maximum of values[member] for each key, empty for a key without members
+    long[] max(long[] values, long empty) {
+      long[] result = new long[keys.size()];
+      for (int id = 0; id < keys.size(); id++) {
+        long max = empty;
+        for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+          max = Math.max(max, values[members[i]]);
+        }
+        result[id] = max;
+      }
+      return result;
+    }
+  }
+}
@@ -8,11 +8,18 @@ package com.rabbitmq.actions;
 import static com.rabbitmq.actions.LogUtils.*;
 import static java.util.stream.Collectors.*;
 
+import com.rabbitmq.actions.Domain.Decision;
 import com.rabbitmq.actions.Domain.PackageVersion;
+import com.rabbitmq.actions.RetentionEngine.Retention;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class PackagecloudDeletePackageAction {
@@ -21,36 +28,167 @@ public class PackagecloudDeletePackageAction {
     if (args.length == 1 && "test".equals(args[0])) {
       Utils.testSequence();
     }
-    Map<String, String> envArguments = new LinkedHashMap<>();
-    envArguments.put("INPUT_USERNAME", "username");
-    envArguments.put("INPUT_REPOSITORY", "repository");
-    envArguments.put("INPUT_TOKEN", "token");
+    // e.g. keep_last_n => INPUT_KEEP_LAST_N
+    Function<String, String> inputs =
+        name -> System.getenv("INPUT_" + name.toUpperCase(Locale.ENGLISH));
+    String repositories = inputs.apply("repositories");
+    boolean batch = repositories != null && !repositories.isBlank();
+
+    List<String> requiredInputs =
+        batch ? List.of("username", "token") : List.of("username", "repository", "token");
+    for (String input : requiredInputs) {
+      try {
+        checkParameter(inputs, input);
+      } catch (IllegalArgumentException e) {
+        logRed(e.getMessage());
+        System.exit(1);
+      }
+    }
 
-    for (Entry<String, String> entry : envArguments.entrySet()) {
+    Metrics metrics = new Metrics();
+    long start = System.nanoTime();
+    if (batch) {
+      List<Map<String, String>> repositoryInputs;
+      try {
+        repositoryInputs = RepositoryBatch.parse(repositories);
+      } catch (RuntimeException e) {
+        logRed("Incorrect value for repositories: " + e.getMessage());
+        System.exit(1);
+        return;
+      }
+      int repositoryConcurrency =
+          positiveInt(
+              inputs.apply("repository_concurrency"),
+              "repository_concurrency",
+              RepositoryBatch.DEFAULT_CONCURRENCY);
+      // one connection pool and one request budget for all the repositories
+      HttpClient client = PackagecloudLogic.PackagecloudPackageAccess.newHttpClient();
+      RequestScheduler scheduler = requestScheduler(inputs);
+      List<RepositoryBatch.Summary> summaries =
+          new RepositoryBatch(repositoryConcurrency)
+              .run(
+                  repositoryInputs,
+                  inputs,
+                  repository -> run(repository, client, scheduler, metrics));
+
+      newLine();
+      logGreen("Summary:");
+      int deleted = 0, failed = 0, errors = 0;
+      for (RepositoryBatch.Summary summary : summaries) {
+        if (summary.error() != null) {
+          errors++;
+          logIndent(red(summary.repository() + ": error, " + summary.error()));
+        } else {
+          deleted += summary.deleted();
+          failed += summary.failed();
+          logIndent(
+              summary.repository()
+                  + ": deleted "
+                  + summary.deleted()
+                  + " file(s)"
+                  + (summary.failed() > 0
+                      ? red(", failed to delete " + summary.failed() + " file(s)")
+                      : ""));
+        }
+      }
+      logGreen("Deleted " + deleted + " file(s) in " + summaries.size() + " repositories");
+      if (failed > 0) {
+        logRed("Failed to delete " + failed + " file(s)");
+      }
+      metrics.count("repositories", summaries.size());
+      metrics.phase("total", start);
+      writeMetrics(inputs, metrics);
+      if (errors > 0) {
+        logRed(errors + " repositories could not be processed");
+        System.exit(1);
+      }
+    } else {
       try {
-        checkParameter(entry.getKey(), entry.getValue());
+        run(inputs, null, null, metrics);
       } catch (IllegalArgumentException e) {
+        // e.g. incorrect mode, missing plan_file, plan of another repository
         logRed(e.getMessage());
         System.exit(1);
       }
+      metrics.phase("total", start);
+      writeMetrics(inputs, metrics);
     }
-    String username = System.getenv("INPUT_USERNAME");
-    String repository = System.getenv("INPUT_REPOSITORY");
-    String token = System.getenv("INPUT_TOKEN");
+  }
 
-    String type = System.getenv("INPUT_TYPE");
-    String globs = System.getenv("INPUT_GLOBS");
-    String versionFilter = System.getenv("INPUT_VERSION_FILTER");
-    String orderBy = System.getenv("INPUT_ORDER_BY");
-    String keepLastNStr = System.getenv("INPUT_KEEP_LAST_N");
-    String keepLastMinorPatchesStr = System.getenv("INPUT_KEEP_LAST_MINOR_PATCHES");
-    String doDeleteStr = System.getenv("INPUT_DO_DELETE");
+  private static void writeMetrics(Function<String, String> inputs, Metrics metrics) {
+    String githubOutput = System.getenv("GITHUB_OUTPUT");
+    String metricsFile = inputs.apply("metrics_file");
+    try {
+      if (githubOutput != null && !githubOutput.isBlank()) {
+        metrics.writeGitHubOutput(Path.of(githubOutput));
+      }
+      if (metricsFile != null && !metricsFile.isBlank()) {
+        metrics.writeJson(Path.of(metricsFile));
+      }
+    } catch (IOException e) {
+      // the metrics must not fail the run
+      logYellow("Could not write metrics: " + e.getMessage());
+    }
+  }
+
+  private static RequestScheduler requestScheduler(Function<String, String> inputs) {
+    String maxRequestsPerSecond = inputs.apply("max_requests_per_second");
+    if (maxRequestsPerSecond == null || maxRequestsPerSecond.isBlank()) {
+      return new RequestScheduler();
+    }
+    return new RequestScheduler(
+        positiveInt(maxRequestsPerSecond, "max_requests_per_second", Integer.MAX_VALUE));
+  }
+
+  // processes one repository, with its own client and scheduler unless they are shared
+  static RepositoryBatch.Summary run(
+      Function<String, String> inputs,
+      HttpClient client,
+      RequestScheduler scheduler,
+      Metrics metrics) {
+    String username = inputs.apply("username");
+    String repository = inputs.apply("repository");
+    String token = inputs.apply("token");
+
+    String type = inputs.apply("type");
+    String globs = inputs.apply("globs");
+    String versionFilter = inputs.apply("version_filter");
+    String orderBy = inputs.apply("order_by");
+    String keepLastNStr = inputs.apply("keep_last_n");
+    String keepLastMinorPatchesStr = inputs.apply("keep_last_minor_patches");
+    String doDeleteStr = inputs.apply("do_delete");
+    String deleteConcurrencyStr = inputs.apply("delete_concurrency");
+    String listConcurrencyStr = inputs.apply("list_concurrency");
+    String maxAttemptsStr = inputs.apply("max_attempts");
+    String cacheDirectory = inputs.apply("cache_directory");
+    String stateFile = inputs.apply("state_file");
+    String fullScanIntervalDaysStr = inputs.apply("full_scan_interval_days");
+    String keepLatestPerMajorStr = inputs.apply("keep_latest_per_major");
+    String keepNewerThanDaysStr = inputs.apply("keep_newer_than_days");
+    String keepVersions = inputs.apply("keep_versions");
+    String groupBy = inputs.apply("group_by");
+    String apiUrl = inputs.apply("api_url");
+    String mode = inputs.apply("mode");
+    String planFile = inputs.apply("plan_file");
+    String journalFile = inputs.apply("journal_file");
+
+    boolean planMode = "plan".equals(mode);
+    boolean applyMode = "apply".equals(mode);
+    if (mode != null && !mode.isBlank() && !"run".equals(mode) && !planMode && !applyMode) {
+      throw new IllegalArgumentException(
+          "Incorrect value for mode: " + mode + " (one of [run, plan, apply])");
+    }
+    if ((planMode || applyMode) && (planFile == null || planFile.isBlank())) {
+      throw new IllegalArgumentException("Parameter plan_file must be set in " + mode + " mode");
+    }
 
     boolean orderByVersion = true;
     if ("time".equals(orderBy)) {
       orderByVersion = false;
     }
 
+    boolean groupByDistribution = "distribution".equals(groupBy);
+
     int keepLastN = 0;
     if (keepLastNStr != null) {
       try {
@@ -66,236 +204,460 @@ public class PackagecloudDeletePackageAction {
       keepLastMinorPatches = Boolean.parseBoolean(keepLastMinorPatchesStr);
     }
 
+    boolean keepLatestPerMajor = false;
+    if (keepLatestPerMajorStr != null) {
+      keepLatestPerMajor = Boolean.parseBoolean(keepLatestPerMajorStr);
+    }
+
+    int keepNewerThanDays = 0;
+    if (keepNewerThanDaysStr != null) {
+      try {
+        keepNewerThanDays = Integer.parseInt(keepNewerThanDaysStr);
+      } catch (Exception e) {
+        logYellow("Incorrect value for keep_newer_than_days: " + keepNewerThanDaysStr);
+        logYellow("Using default value instead (" + keepNewerThanDays + ").");
+      }
+    }
+
     boolean doDeleteTemp = false;
     if (doDeleteStr != null) {
       doDeleteTemp = Boolean.parseBoolean(doDeleteStr);
     }
-    boolean doDelete = doDeleteTemp;
-
-    PackagecloudLogic.PackageAccess access =
+    // a plan run never deletes
+    boolean doDelete = doDeleteTemp && !planMode;
+
+    int deleteConcurrency =
+        positiveInt(deleteConcurrencyStr, "delete_concurrency", DeletionEngine.DEFAULT_CONCURRENCY);
+    int listConcurrency =
+        positiveInt(
+            listConcurrencyStr,
+            "list_concurrency",
+            PackagecloudLogic.PackagecloudPackageAccess.DEFAULT_LIST_CONCURRENCY);
+    int maxAttempts = positiveInt(maxAttemptsStr, "max_attempts", RetryPolicy.DEFAULT_MAX_ATTEMPTS);
+
+    PackagecloudLogic.PackagecloudPackageAccess packagecloudAccess =
         new PackagecloudLogic.PackagecloudPackageAccess(
-            username, repository, token, type, globs, versionFilter);
-
-    List<Domain.Package> packages = access.list();
-
-    Map<String, PackageVersion> versions =
-        packages.stream()
-            .reduce(
-                new HashMap<>(),
-                (packageVersions, aPackage) -> {
-                  PackageVersion packageVersion =
-                      packageVersions.computeIfAbsent(
-                          aPackage.version(),
-                          version -> {
-                            PackageVersion pv = new PackageVersion(version);
-                            pv.consider(aPackage);
-                            return pv;
-                          });
-                  packageVersion.consider(aPackage);
-                  return packageVersions;
-                },
-                (stringPackageVersionHashMap, stringPackageVersionHashMap2) -> {
-                  stringPackageVersionHashMap.putAll(stringPackageVersionHashMap2);
-                  return stringPackageVersionHashMap;
-                });
-
-    List<String> versionsToDelete = filterForDeletion(versions.values(), keepLastN, orderByVersion);
-
-    Collection<String> deletionExceptions = Collections.emptySet();
-    if (keepLastMinorPatches) {
-      String latestMinor =
-          latestMinor(versions.values().stream().map(v -> v.version).collect(toList()));
-      deletionExceptions = lastMinorPatches(latestMinor, versionsToDelete);
-      if (!orderByVersion) {
-        logYellow("Warning: keep_last_minor_patches should only be used with order_by:version");
+                apiUrl == null || apiUrl.isBlank() ? PackagecloudLogic.API_URL : apiUrl,
+                username,
+                repository,
+                token,
+                type,
+                globs,
+                versionFilter)
+            .listConcurrency(listConcurrency)
+            .deleteConcurrency(deleteConcurrency)
+            .requestScheduler(scheduler == null ? requestScheduler(inputs) : scheduler)
+            .retryPolicy(RetryPolicy.DEFAULT.withMaxAttempts(maxAttempts))
+            .metrics(metrics);
+    if (client != null) {
+      packagecloudAccess.httpClient(client);
+    }
+    if (cacheDirectory != null && !cacheDirectory.isBlank()) {
+      packagecloudAccess.listingCache(new ListingCache(Path.of(cacheDirectory)));
+    }
+    PackagecloudLogic.PackageAccess access = packagecloudAccess;
+
+    DeletionJournal journal = null;
+    RepositoryBatch.Summary resumed = null;
+    if (journalFile != null && !journalFile.isBlank() && !doDelete && !applyMode) {
+      // a dry run or a plan run does not delete anything, the journal is left for the next run
+      List<Domain.Package> pending = DeletionJournal.pending(Path.of(journalFile), repository);
+      if (!pending.isEmpty()) {
+        logYellow(
+            pending.size()
+                + " deletion(s) not completed in journal "
+                + journalFile
+                + ", resumed by the next run with do_delete: true");
+        for (Domain.Package p : pending) {
+          logIndent(red("deleting " + p.filename()) + yellow(" (skipped)"));
+        }
+        newLine();
+      }
+    } else if (journalFile != null && !journalFile.isBlank()) {
+      journal = DeletionJournal.open(Path.of(journalFile), repository, metrics);
+      if (!journal.pending().isEmpty()) {
+        logGreen(
+            "Resuming "
+                + journal.pending().size()
+                + " deletion(s) from journal "
+                + journalFile
+                + ", without listing");
+        resumed =
+            deleteWithoutListing(
+                access, repository, journal.pending(), stateFile, journal, metrics);
+        if (!applyMode) {
+          return resumed;
+        }
+        // the plan was approved for this run, it is applied after the resume
+        newLine();
+        journal = DeletionJournal.open(Path.of(journalFile), repository, metrics);
       }
     }
 
+    if (applyMode) {
+      RepositoryBatch.Summary applied =
+          apply(access, repository, Path.of(planFile), stateFile, journal, metrics);
+      return resumed == null
+          ? applied
+          : new RepositoryBatch.Summary(
+              repository,
+              resumed.deleted() + applied.deleted(),
+              resumed.failed() + applied.failed(),
+              null);
+    }
+
+    IncrementalListing incrementalListing = null;
+    List<Domain.Package> packages;
+    long listStart = System.nanoTime();
+    if (stateFile != null && !stateFile.isBlank()) {
+      int fullScanIntervalDays =
+          positiveInt(
+              fullScanIntervalDaysStr,
+              "full_scan_interval_days",
+              (int) IncrementalListing.DEFAULT_FULL_SCAN_INTERVAL.toDays());
+      incrementalListing =
+          new IncrementalListing(
+              packagecloudAccess,
+              Path.of(stateFile),
+              String.join(
+                  "|", String.valueOf(type), String.valueOf(globs), String.valueOf(versionFilter)),
+              Duration.ofDays(fullScanIntervalDays));
+      packages = incrementalListing.list();
+    } else {
+      packages = access.list();
+    }
+    metrics.phase("list", listStart);
+
+    long planStart = System.nanoTime();
+    VersionKeys versionKeys = new VersionKeys();
+    PackageTable table = PackageTable.of(packages, versionKeys);
+    metrics.count("packages", table.size());
+    metrics.count("versions", table.versionCount());
+    if (keepLastMinorPatches && !orderByVersion) {
+      logYellow("Warning: keep_last_minor_patches should only be used with order_by:version");
+    }
+    int keepLastNValue = keepLastN;
+    boolean orderByVersionValue = orderByVersion;
+    boolean keepLastMinorPatchesValue = keepLastMinorPatches;
+    boolean keepLatestPerMajorValue = keepLatestPerMajor;
+    int keepNewerThanDaysValue = keepNewerThanDays;
+    ZonedDateTime now = ZonedDateTime.now();
+    // evaluated in this order, the first policy keeping a version gives the reason
+    BiFunction<String, List<PackageVersion>, List<RetentionPolicy>> retentionPolicies =
+        (group, groupVersions) -> {
+          List<RetentionPolicy> policies = new ArrayList<>();
+          policies.add(
+              RetentionPolicy.keepLastN(
+                  groupVersions, keepLastNValue, orderByVersionValue, versionKeys));
+          if (keepLastMinorPatchesValue) {
+            policies.add(
+                RetentionPolicy.keepLatestPatchPerMinor(
+                    table.latestMinor(group, versionKeys.comparator()), versionKeys));
+          }
+          if (keepLatestPerMajorValue) {
+            policies.add(RetentionPolicy.keepLatestPerMajor(versionKeys));
+          }
+          if (keepNewerThanDaysValue > 0) {
+            policies.add(
+                RetentionPolicy.keepNewerThan(Duration.ofDays(keepNewerThanDaysValue), now));
+          }
+          if (keepVersions != null && !keepVersions.isBlank()) {
+            policies.add(RetentionPolicy.keepMatching(keepVersions));
+          }
+          return policies;
+        };
+
     DateTimeFormatter dateTimeFormatter =
         DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mmO", Locale.ENGLISH);
-    Function<String, String> formatVersion =
-        version -> {
-          PackageVersion packageVersion = versions.get(version);
-          return String.format(
-              "%s [%s]",
-              packageVersion.version, dateTimeFormatter.format(packageVersion.lastPackageDate));
-        };
+    Function<PackageVersion, String> formatVersion =
+        packageVersion ->
+            String.format(
+                "%s [%s]",
+                packageVersion.version, dateTimeFormatter.format(packageVersion.lastPackageDate));
+
+    // one group for all the packages, or one group per distribution
+    List<String> groups =
+        groupByDistribution ? table.distributions() : Collections.singletonList(null);
+    Map<String, Map<String, Retention>> retentionsByGroup = new HashMap<>();
+    for (String group : groups) {
+      List<PackageVersion> groupVersions =
+          group == null ? table.packageVersions() : table.packageVersions(group);
+      Map<String, Retention> retentions =
+          new RetentionEngine(retentionPolicies.apply(group, groupVersions), versionKeys)
+              .evaluate(groupVersions);
+      retentionsByGroup.put(group, retentions);
+
+      if (group != null) {
+        log(green("Distribution: ") + group);
+      }
+      log(
+          green("Version(s) detected: ")
+              + groupVersions.stream().map(formatVersion).collect(joining(", ")));
+      log(
+          green("Version(s) to delete: ")
+              + groupVersions.stream()
+                  .filter(v -> retentions.get(v.version).decision().delete())
+                  .map(formatVersion)
+                  .collect(joining(", ")));
+
+      List<String> deletionExceptions =
+          groupVersions.stream()
+              .filter(v -> retentions.get(v.version).decision() == Decision.KEEP_LATEST_MINOR_PATCH)
+              .map(formatVersion)
+              .toList();
+      if (!deletionExceptions.isEmpty()) {
+        log(
+            green("Deletion exception(s) (last minor patches): ")
+                + String.join(", ", deletionExceptions));
+      }
 
-    log(
-        green("Version(s) detected: ")
-            + versions.values().stream()
-                .map(pv -> formatVersion.apply(pv.version))
-                .collect(joining(", ")));
-    log(
-        green("Version(s) to delete: ")
-            + versionsToDelete.stream().map(formatVersion).collect(joining(", ")));
+      newLine();
 
-    if (keepLastMinorPatches && !deletionExceptions.isEmpty()) {
-      log(
-          green("Deletion exception(s) (last minor patches): ")
-              + deletionExceptions.stream().map(formatVersion).collect(joining(", ")));
+      List<String> versionsToKeep =
+          groupVersions.stream()
+              .filter(v -> !retentions.get(v.version).decision().delete())
+              .map(formatVersion)
+              .toList();
+
+      if (!versionsToKeep.isEmpty()) {
+        log(green("Version(s) to keep: ") + String.join(", ", versionsToKeep));
+      }
+
+      newLine();
+    }
+    metrics.phase("plan", planStart);
+
+    long deleteStart = System.nanoTime();
+    int deletedCount = 0;
+    List<Domain.Package> packagesToDelete = new ArrayList<>();
+    DeletionPlan plan = planMode ? new DeletionPlan(repository, now) : null;
+    logGreen("Packages:");
+    for (int row = 0; row < table.size(); row++) {
+      Retention retention =
+          retentionsByGroup
+              .get(groupByDistribution ? table.distribution(row) : null)
+              .get(table.version(row));
+      boolean shouldBeDeleted = retention.decision().delete();
+      if (shouldBeDeleted) {
+        metrics.count("packages_to_delete", 1);
+      }
+      if (plan != null) {
+        plan.add(table.get(row), retention);
+      }
+      if (shouldBeDeleted && doDelete) {
+        packagesToDelete.add(table.get(row));
+      } else {
+        if (shouldBeDeleted) {
+          deletedCount++;
+        }
+        logIndent(
+            shouldBeDeleted
+                ? (red("deleting " + table.filename(row))
+                    + yellow(planMode ? " (planned)" : " (skipped)"))
+                : "keeping " + table.filename(row) + " (" + retention.reason() + ")");
+      }
     }
 
-    Collection<String> exceptionsToDeletion = new HashSet<>(deletionExceptions);
+    if (plan != null) {
+      plan.write(Path.of(planFile));
+      newLine();
+      logGreen("Plan written to " + planFile + ": " + deletedCount + " file(s) to delete");
+      return new RepositoryBatch.Summary(repository, deletedCount, 0, null);
+    }
 
-    newLine();
+    List<Domain.Package> deletedPackages = delete(access, packagesToDelete, journal, metrics);
+    int failedCount = packagesToDelete.size() - deletedPackages.size();
+    deletedCount += deletedPackages.size();
+    if (incrementalListing != null) {
+      incrementalListing.forget(deletedPackages);
+    }
+    metrics.phase("delete", deleteStart);
 
-    List<String> versionsToKeep =
-        versions.values().stream()
-            .filter(
-                pv ->
-                    !versionsToDelete.contains(pv.version)
-                        || exceptionsToDeletion.contains(pv.version))
-            .map(pv -> formatVersion.apply(pv.version))
-            .toList();
+    newLine();
+    logGreen("Deleted " + deletedCount + " file(s)");
+    if (failedCount > 0) {
+      logRed("Failed to delete " + failedCount + " file(s)");
+    }
+    return new RepositoryBatch.Summary(repository, deletedCount, failedCount, null);
+  }
 
-    if (!versionsToKeep.isEmpty()) {
-      log(green("Version(s) to keep: ") + String.join(", ", versionsToKeep));
+  // deletes the packages of a plan file, without listing the repository
+  private static RepositoryBatch.Summary apply(
+      PackagecloudLogic.PackageAccess access,
+      String repository,
+      Path planFile,
+      String stateFile,
+      DeletionJournal journal,
+      Metrics metrics) {
+    DeletionPlan plan = DeletionPlan.read(planFile);
+    if (!repository.equals(plan.repository)) {
+      throw new IllegalArgumentException(
+          "Plan file "
+              + planFile
+              + " is for repository "
+              + plan.repository
+              + ", not "
+              + repository);
     }
+    List<Domain.Package> packagesToDelete = plan.packagesToDelete();
+    logGreen(
+        "Applying plan "
+            + planFile
+            + " created at "
+            + plan.created_at
+            + ": "
+            + packagesToDelete.size()
+            + " file(s) to delete");
+    return deleteWithoutListing(access, repository, packagesToDelete, stateFile, journal, metrics);
+  }
 
+  private static RepositoryBatch.Summary deleteWithoutListing(
+      PackagecloudLogic.PackageAccess access,
+      String repository,
+      List<Domain.Package> packagesToDelete,
+      String stateFile,
+      DeletionJournal journal,
+      Metrics metrics) {
+    metrics.count("packages_to_delete", packagesToDelete.size());
     newLine();
 
-    AtomicInteger deletedCount = new AtomicInteger();
+    long deleteStart = System.nanoTime();
     logGreen("Packages:");
-    packages.forEach(
-        p -> {
-          boolean shouldBeDeleted =
-              versionsToDelete.contains(p.version()) && !exceptionsToDeletion.contains(p.version());
-          if (shouldBeDeleted) {
-            deletedCount.incrementAndGet();
-          }
-          if (shouldBeDeleted && doDelete) {
-            try {
-              access.delete(p);
-              logIndent(red("deleting " + p.filename()));
-            } catch (Exception e) {
-              logRed("Error while trying to delete " + p.destroy_url() + ": " + e.getMessage());
-            }
-          } else {
-            boolean isDeletionException = exceptionsToDeletion.contains(p.version());
-            logIndent(
-                shouldBeDeleted
-                    ? (red("deleting " + p.filename()) + yellow(" (skipped)"))
-                    : "keeping "
-                        + p.filename()
-                        + (isDeletionException ? " (latest minor patch)" : ""));
-          }
-        });
+    List<Domain.Package> deletedPackages = delete(access, packagesToDelete, journal, metrics);
+    int failedCount = packagesToDelete.size() - deletedPackages.size();
+    if (stateFile != null && !stateFile.isBlank()) {
+      IncrementalListing.forget(Path.of(stateFile), deletedPackages);
+    }
+    metrics.phase("delete", deleteStart);
 
     newLine();
-    logGreen("Deleted " + deletedCount.get() + " file(s)");
+    logGreen("Deleted " + deletedPackages.size() + " file(s)");
+    if (failedCount > 0) {
+      logRed("Failed to delete " + failedCount + " file(s)");
+    }
+    return new RepositoryBatch.Summary(repository, deletedPackages.size(), failedCount, null);
   }
 
-  private static void checkParameter(String env, String arg) {
-    if (System.getenv(env) == null) {
-      throw new IllegalArgumentException("Parameter " + arg + " must be set");
+  // returns the deleted packages, including the ones already deleted
+  private static List<Domain.Package> delete(
+      PackagecloudLogic.PackageAccess access,
+      List<Domain.Package> packages,
+      DeletionJournal journal,
+      Metrics metrics) {
+    if (journal == null) {
+      return delete(access, packages, result -> {}, metrics);
+    }
+    try (journal) {
+      journal.intend(packages);
+      List<Domain.Package> deletedPackages = delete(access, packages, journal::completed, metrics);
+      // the failures are reported, the next run lists them again
+      journal.complete();
+      return deletedPackages;
     }
   }
 
-  static List<String> filterForDeletion(
-      Collection<PackageVersion> versions, int keepLastN, boolean orderByVersion) {
-    if (versions.isEmpty()) {
-      return Collections.emptyList();
-    } else if (keepLastN <= 0) {
-      // do not want to keep any, return all
-      return versions.stream().map(v -> v.version).collect(toList());
-    } else if (keepLastN >= versions.size()) {
-      // we want to keep more than we have, so nothing to delete
-      return Collections.emptyList();
-    } else {
-      class VersionWrapper {
-
-        private final PackageVersion version;
-        private final ComparableVersion comparableVersion;
-
-        VersionWrapper(PackageVersion version) {
-          this.version = version;
-          this.comparableVersion =
-              new ComparableVersion(
-                  version.version.startsWith("1:")
-                      ? version.version.substring(2)
-                      : version.version);
-        }
+  private static List<Domain.Package> delete(
+      PackagecloudLogic.PackageAccess access,
+      List<Domain.Package> packages,
+      Consumer<PackagecloudLogic.DeletionResult> listener,
+      Metrics metrics) {
+    List<PackagecloudLogic.DeletionResult> results =
+        access.deleteAll(
+            packages,
+            result -> {
+              listener.accept(result);
+              switch (result.status()) {
+                case DELETED -> logIndent(red("deleting " + result.p().filename()));
+                case ALREADY_DELETED ->
+                    logIndent(red("deleting " + result.p().filename()) + " (already deleted)");
+                case FAILED ->
+                    logRed(
+                        "Error while trying to delete "
+                            + result.p().destroy_url()
+                            + ": "
+                            + result.error());
+              }
+            });
+    List<Domain.Package> deletedPackages = new ArrayList<>(results.size());
+    for (PackagecloudLogic.DeletionResult result : results) {
+      if (result.status() != PackagecloudLogic.DeletionStatus.FAILED) {
+        deletedPackages.add(result.p());
       }
-      Comparator<VersionWrapper> comparator =
-          orderByVersion
-              ? Comparator.comparing(packageVersion -> packageVersion.comparableVersion)
-              : Comparator.comparing(packageVersion -> packageVersion.version.lastPackageDate);
-      return versions.stream()
-          .map(VersionWrapper::new)
-          .sorted(comparator)
-          .limit(versions.size() - keepLastN)
-          .map(w -> w.version.version)
-          .collect(toList());
     }
+    metrics.count("packages_deleted", deletedPackages.size());
+    metrics.count("packages_failed", results.size() - deletedPackages.size());
+    return deletedPackages;
   }
 
-  static String latestMinor(List<String> versions) {
-    if (versions == null || versions.isEmpty()) {
-      return null;
-    } else {
-      return versions.stream()
-          .map(PackagecloudDeletePackageAction::extractMinor)
-          .distinct()
-          .map(ComparableVersion::new)
-          .max(Comparator.naturalOrder())
-          .get()
-          .toString();
+  private static void checkParameter(Function<String, String> inputs, String name) {
+    if (inputs.apply(name) == null) {
+      throw new IllegalArgumentException("Parameter " + name + " must be set");
     }
   }
 
-  static String extractMinor(String version) {
-    // e.g. 1:22.3.4.3-1, removing 1:
-    String curatedVersion = version.startsWith("1:") ? version.substring(2) : version;
-    // e.g. 22.3-1, removing -1
-    curatedVersion =
-        curatedVersion.contains("-")
-            ? curatedVersion.substring(0, curatedVersion.lastIndexOf("-"))
-            : curatedVersion;
-    String[] digits = curatedVersion.split("\\.");
-    if (digits == null || digits.length <= 1) {
-      return curatedVersion;
-    } else {
-      return digits[0] + "." + digits[1];
+  static int positiveInt(String value, String name, int defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      int result = Integer.parseInt(value);
+      if (result > 0) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // logging below
     }
+    logYellow("Incorrect value for " + name + ": " + value);
+    logYellow("Using default value instead (" + defaultValue + ").");
+    return defaultValue;
   }
 
-  static List<String> lastMinorPatches(String minorToIgnore, List<String> versions) {
-    if (versions == null || versions.isEmpty()) {
+  // the versions not in the last keepLastN, in input order, without sorting all of them
+  static List<String> selectForDeletion(
+      Collection<PackageVersion> versions,
+      int keepLastN,
+      boolean orderByVersion,
+      VersionKeys versionKeys) {
+    if (versions.isEmpty()) {
+      return Collections.emptyList();
+    } else if (keepLastN <= 0) {
+      return versions.stream().map(v -> v.version).collect(toList());
+    } else if (keepLastN >= versions.size()) {
       return Collections.emptyList();
     }
-    class VersionWrapper {
-
-      private final String version;
-      private final ComparableVersion comparableVersion;
-      private final String minor;
-
-      VersionWrapper(String version) {
-        this.version = version;
-        // e.g. 1:22.3.4.3-1, removing 1:
-        String curatedVersion = version.startsWith("1:") ? version.substring(2) : version;
-        this.comparableVersion = new ComparableVersion(curatedVersion);
-        this.minor = extractMinor(version);
+    PackageVersion[] array = versions.toArray(new PackageVersion[0]);
+    Comparator<PackageVersion> comparator =
+        orderByVersion
+            ? Comparator.comparing(packageVersion -> versionKeys.get(packageVersion.version))
+            : Comparator.comparing(packageVersion -> packageVersion.lastPackageDate);
+    // the versions to keep, the smallest one on top
+    PriorityQueue<Integer> toKeep =
+        new PriorityQueue<>(keepLastN, (i, j) -> compareRanks(array, comparator, i, j));
+    for (int i = 0; i < array.length; i++) {
+      if (toKeep.size() < keepLastN) {
+        toKeep.add(i);
+      } else if (compareRanks(array, comparator, i, toKeep.peek()) > 0) {
+        toKeep.poll();
+        toKeep.add(i);
+      }
+    }
+    boolean[] keep = new boolean[array.length];
+    for (int i : toKeep) {
+      keep[i] = true;
+    }
+    List<String> result = new ArrayList<>(array.length - keepLastN);
+    for (int i = 0; i < array.length; i++) {
+      if (!keep[i]) {
+        result.add(array[i].version);
       }
     }
+    return result;
+  }
 
-    Map<String, List<VersionWrapper>> minors =
-        versions.stream()
-            .map(VersionWrapper::new)
-            .filter(v -> !v.minor.equals(minorToIgnore))
-            .collect(groupingBy(versionWrapper -> versionWrapper.minor));
-
-    Comparator<VersionWrapper> comparator =
-        Comparator.comparing(wrapper -> wrapper.comparableVersion);
-    return minors.values().stream()
-        .map(
-            patches -> {
-              if (patches.size() == 1) {
-                return patches.get(0).version;
-              } else {
-                return Collections.max(patches, comparator).version;
-              }
-            })
-        .collect(toList());
+  // ties broken by position, like a stable sort
+  private static int compareRanks(
+      PackageVersion[] versions, Comparator<PackageVersion> comparator, int i, int j) {
+    int result = comparator.compare(versions[i], versions[j]);
+    return result != 0 ? result : Integer.compare(i, j);
   }
 }
@@ -5,24 +5,34 @@
  */
 package com.rabbitmq.actions;
 
-import static com.rabbitmq.actions.LogUtils.logIndent;
-import static com.rabbitmq.actions.LogUtils.yellow;
 import static java.util.stream.Collectors.toList;
 
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 abstract class PackagecloudLogic {
 
-  private static final String API_URL = "https://packagecloud.io/api/v1/repos";
+  static final String API_URL = "https://packagecloud.io/api/v1/repos";
 
   private PackagecloudLogic() {}
 
@@ -31,15 +41,171 @@ abstract class PackagecloudLogic {
     List<Domain.Package> list();
 
     void delete(Domain.Package p);
+
+    default List<DeletionResult> deleteAll(Collection<Domain.Package> packages) {
+      return deleteAll(packages, result -> {});
+    }
+
+    // the listener is called as soon as a deletion completes, possibly from different threads
+    default List<DeletionResult> deleteAll(
+        Collection<Domain.Package> packages, Consumer<DeletionResult> listener) {
+      List<DeletionResult> results = new ArrayList<>(packages.size());
+      for (Domain.Package p : packages) {
+        long start = System.nanoTime();
+        DeletionResult result;
+        try {
+          delete(p);
+          result =
+              new DeletionResult(
+                  p, DeletionStatus.DELETED, Duration.ofNanos(System.nanoTime() - start), 1, null);
+        } catch (Exception e) {
+          result =
+              new DeletionResult(
+                  p,
+                  DeletionStatus.FAILED,
+                  Duration.ofNanos(System.nanoTime() - start),
+                  1,
+                  e.getMessage());
+        }
+        listener.accept(result);
+        results.add(result);
+      }
+      return results;
+    }
+  }
+
+  // closing it stops the decoding of the pages, not the HTTP client
+  interface AsyncPackageAccess extends AutoCloseable {
+
+    CompletableFuture<List<Domain.Package>> list();
+
+    CompletableFuture<Page> listPage(HttpRequest request);
+
+    // never completes exceptionally, failures are reported in the result
+    CompletableFuture<DeletionResult> delete(Domain.Package p);
+
+    default CompletableFuture<List<DeletionResult>> deleteAll(Collection<Domain.Package> packages) {
+      List<CompletableFuture<DeletionResult>> results =
+          packages.stream().map(this::delete).toList();
+      return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+          .thenApply(ignored -> results.stream().map(CompletableFuture::join).toList());
+    }
+
+    @Override
+    void close();
+  }
+
+  // starts asynchronous operations only when fewer than the maximum are in flight
+  static class InFlightLimiter {
+
+    private final int maxInFlight;
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    private int inFlight = 0;
+
+    InFlightLimiter(int maxInFlight) {
+      if (maxInFlight <= 0) {
+        throw new IllegalArgumentException(
+            "Maximum of in-flight operations must be greater than 0: " + maxInFlight);
+      }
+      this.maxInFlight = maxInFlight;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+      CompletableFuture<T> result = new CompletableFuture<>();
+      Runnable start =
+          () -> {
+            CompletableFuture<T> future;
+            try {
+              future = operation.get();
+            } catch (RuntimeException e) {
+              future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete(
+                (value, throwable) -> {
+                  release();
+                  if (throwable == null) {
+                    result.complete(value);
+                  } else {
+                    result.completeExceptionally(throwable);
+                  }
+                });
+          };
+      boolean startNow;
+      synchronized (this) {
+        startNow = inFlight < maxInFlight;
+        if (startNow) {
+          inFlight++;
+        } else {
+          pending.add(start);
+        }
+      }
+      if (startNow) {
+        start.run();
+      }
+      return result;
+    }
+
+    synchronized int inFlight() {
+      return inFlight;
+    }
+
+    private void release() {
+      Runnable next;
+      synchronized (this) {
+        next = pending.poll();
+        if (next == null) {
+          inFlight--;
+        }
+      }
+      // the permit goes straight to the next pending operation,
+      // started from another thread to not pile up completions on the stack
+      if (next != null) {
+        ForkJoinPool.commonPool().execute(next);
+      }
+    }
+  }
+
+  enum DeletionStatus {
+    DELETED,
+    ALREADY_DELETED,
+    FAILED
+  }
+
+  record DeletionResult(
+      Domain.Package p, DeletionStatus status, Duration latency, int attempts, String error) {}
+
+  // oldest and newestFirst are computed on all the packages of the page, before filtering
+  record Page(
+      List<Domain.Package> packages,
+      HttpHeaders headers,
+      ZonedDateTime oldest,
+      boolean newestFirst) {
+
+    String link(String rel) {
+      return headers
+          .firstValue("link")
+          .map(h -> PackagecloudPackageAccess.link(h, rel))
+          .orElse(null);
+    }
   }
 
   static class PackagecloudPackageAccess implements PackageAccess {
 
-    private final HttpClient client =
-        HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+    static final int DEFAULT_LIST_CONCURRENCY = 4;
+
+    // can be shared by the accesses to several repositories (connection pool, TLS sessions)
+    private HttpClient client;
 
     private final String baseUrl;
-    private final String username, repository, token, type, globs, version;
+    private final String username, repository, token, type;
+    private final Predicate<Domain.Package> filter;
+    private int listConcurrency = DEFAULT_LIST_CONCURRENCY;
+    private int deleteConcurrency = DeletionEngine.DEFAULT_CONCURRENCY;
+    // shared by listing and deletion, so both draw from the same request budget
+    private RequestScheduler scheduler = new RequestScheduler();
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private ListingCache cache;
+    private Metrics metrics = new Metrics();
 
     PackagecloudPackageAccess(
         String username,
@@ -64,102 +230,439 @@ abstract class PackagecloudLogic {
       this.repository = repository;
       this.token = token;
       this.type = type;
-      this.globs = globs;
-      this.version = version;
+      this.filter = filter(version, globs);
     }
 
     static String nextLink(String linkHeader) {
-      String nextLink = null;
+      return link(linkHeader, "next");
+    }
+
+    static String link(String linkHeader, String rel) {
+      String relLink = null;
       for (String link : linkHeader.split(",")) {
         // e.g.
         // <https://api.github.com/repositories/343344332/releases?per_page=1&page=3>; rel="next"
         String[] urlRel = link.split(";");
-        if ("rel=\"next\"".equals(urlRel[1].trim())) {
+        if (urlRel.length > 1 && ("rel=\"" + rel + "\"").equals(urlRel[1].trim())) {
           String url = urlRel[0].trim();
           // removing the < and >
-          nextLink = url.substring(1, url.length() - 1);
+          relLink = url.substring(1, url.length() - 1);
         }
       }
-      return nextLink;
+      return relLink;
     }
 
-    @Override
-    public List<Domain.Package> list() {
-      Map<String, String> queryParameters = new LinkedHashMap<>();
-      if (this.type != null) {
-        queryParameters.put("filter", this.type);
+    static int pageNumber(String url) {
+      String query = URI.create(url).getRawQuery();
+      if (query != null) {
+        for (String parameter : query.split("&")) {
+          if (parameter.startsWith("page=")) {
+            try {
+              return Integer.parseInt(parameter.substring("page=".length()));
+            } catch (NumberFormatException e) {
+              return -1;
+            }
+          }
+        }
       }
+      return -1;
+    }
 
-      String path = "packages.json";
+    static String withPageNumber(String url, int page) {
+      return url.replaceFirst("([?&])page=\\d+", "$1page=" + page);
+    }
 
-      if (!queryParameters.isEmpty()) {
-        String parameters =
-            queryParameters.entrySet().stream()
-                .map(e -> e.getKey() + "=" + Utils.encodeHttpParameter(e.getValue()))
-                .collect(Collectors.joining("&"));
-        path = path + "?" + parameters;
+    static int lastPageNumber(HttpHeaders headers) {
+      Optional<String> link = headers.firstValue("link");
+      String lastLink;
+      if (link.isPresent() && (lastLink = link(link.get(), "last")) != null) {
+        return pageNumber(lastLink);
+      }
+      // e.g. Total: 1234, Per-Page: 30
+      OptionalLong total = headers.firstValueAsLong("total");
+      OptionalLong perPage = headers.firstValueAsLong("per-page");
+      if (total.isPresent() && perPage.isPresent() && perPage.getAsLong() > 0) {
+        return (int) ((total.getAsLong() + perPage.getAsLong() - 1) / perPage.getAsLong());
       }
+      return -1;
+    }
 
-      HttpRequest request = requestBuilder(path).GET().build();
+    @Override
+    public List<Domain.Package> list() {
+      HttpRequest request = listRequest();
       try {
-        Type type = TypeToken.getParameterized(List.class, Domain.Package.class).getType();
         List<Domain.Package> packages = new ArrayList<>();
-        boolean hasMore = true;
-        while (hasMore) {
-          HttpResponse<String> response =
-              client.send(request, HttpResponse.BodyHandlers.ofString());
-          packages.addAll(Utils.GSON.fromJson(response.body(), type));
-          Optional<String> link = response.headers().firstValue("link");
-          String nextLink;
-          if (link.isPresent() && (nextLink = nextLink(link.get())) != null) {
-            request = requestBuilder().uri(URI.create(nextLink)).GET().build();
+        Page page = fetch(request);
+        packages.addAll(page.packages());
+        String nextLink = page.link("next");
+        while (nextLink != null) {
+          List<String> predictedLinks = predictedLinks(nextLink, page.headers());
+          if (predictedLinks.isEmpty()) {
+            page = fetch(pageRequest(nextLink));
+            packages.addAll(page.packages());
           } else {
-            hasMore = false;
+            List<Page> pages = fetchAll(predictedLinks);
+            pages.forEach(p -> packages.addAll(p.packages()));
+            page = pages.get(pages.size() - 1);
+          }
+          // the last page can still point further if packages were added in the meantime
+          nextLink = page.link("next");
+        }
+        return packages;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    // follows the pages until reaching packages created before the watermark,
+    // empty if the listing is not sorted from the newest to the oldest package
+    Optional<List<Domain.Package>> listSince(ZonedDateTime watermark) {
+      try {
+        Page page = fetch(listRequest());
+        if (!page.newestFirst()) {
+          return Optional.empty();
+        }
+        List<Domain.Package> packages = new ArrayList<>(page.packages());
+        String nextLink = page.link("next");
+        while (nextLink != null && page.oldest() != null && !page.oldest().isBefore(watermark)) {
+          page = fetch(pageRequest(nextLink));
+          if (!page.newestFirst()) {
+            return Optional.empty();
           }
+          packages.addAll(page.packages());
+          nextLink = page.link("next");
         }
-        return filter(this.version, this.globs, packages);
+        return Optional.of(packages);
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
     }
 
+    static List<String> predictedLinks(String nextLink, HttpHeaders headers) {
+      int nextPage = pageNumber(nextLink);
+      int lastPage = lastPageNumber(headers);
+      if (nextPage <= 0 || lastPage <= nextPage) {
+        // unknown pagination pattern or a single page left, following the links
+        return Collections.emptyList();
+      }
+      List<String> links = new ArrayList<>(lastPage - nextPage + 1);
+      for (int i = nextPage; i <= lastPage; i++) {
+        links.add(withPageNumber(nextLink, i));
+      }
+      return links;
+    }
+
+    private Page fetch(HttpRequest request) throws Exception {
+      return retryPolicy.execute("listing " + request.uri(), () -> doFetch(request));
+    }
+
+    private Page doFetch(HttpRequest request) throws Exception {
+      Optional<ListingCache.Entry> cached = cached(request);
+      HttpResponse<InputStream> response =
+          scheduler.send(
+              client(),
+              conditional(request, cached),
+              listBodyHandler(),
+              metrics.histogram("list_request"));
+      return page(request, cached, response);
+    }
+
+    private Optional<ListingCache.Entry> cached(HttpRequest request) {
+      return this.cache == null ? Optional.empty() : this.cache.get(request.uri());
+    }
+
+    private HttpRequest conditional(HttpRequest request, Optional<ListingCache.Entry> cached) {
+      return cached.map(entry -> this.cache.conditional(request, entry)).orElse(request);
+    }
+
+    // the response of a conditional request, cached if possible
+    private Page page(
+        HttpRequest request,
+        Optional<ListingCache.Entry> cached,
+        HttpResponse<InputStream> response)
+        throws IOException {
+      if (response.statusCode() == 304 && cached.isPresent()) {
+        // not modified, decoding the cached copy
+        response.body().close();
+        return page(cached.get().body(), cached.get().headers());
+      } else if (this.cache != null && ListingCache.isCacheable(response)) {
+        return page(this.cache.store(request.uri(), response), response.headers());
+      } else {
+        return page(response);
+      }
+    }
+
+    private Page page(HttpResponse<InputStream> response) throws IOException {
+      if (response.statusCode() != 200) {
+        response.body().close();
+        if (RetryPolicy.isRetryable(response.statusCode())) {
+          throw new RetryPolicy.RetryableResponseException(response);
+        }
+        throw new IllegalStateException(
+            "Unexpected response code " + response.statusCode() + " for " + response.uri());
+      }
+      return page(response.body(), response.headers());
+    }
+
+    private HttpResponse.BodyHandler<InputStream> listBodyHandler() {
+      return metrics.counting(HttpResponse.BodyHandlers.ofInputStream(), "bytes_received");
+    }
+
+    private Page page(InputStream body, HttpHeaders headers) throws IOException {
+      class Dates {
+        ZonedDateTime previous, oldest;
+        boolean newestFirst = true;
+      }
+      List<Domain.Package> packages = new ArrayList<>();
+      Dates dates = new Dates();
+      AtomicInteger decoded = new AtomicInteger();
+      // includes the transfer of the body, decoded as it arrives
+      long start = System.nanoTime();
+      // non-matching packages are dropped as soon as they are decoded
+      Utils.decodePackages(
+          body,
+          p -> {
+            decoded.incrementAndGet();
+            ZonedDateTime createdAt = p.created_at();
+            if (createdAt != null) {
+              if (dates.previous != null && createdAt.isAfter(dates.previous)) {
+                dates.newestFirst = false;
+              }
+              if (dates.oldest == null || createdAt.isBefore(dates.oldest)) {
+                dates.oldest = createdAt;
+              }
+              dates.previous = createdAt;
+            }
+            if (this.filter.test(p)) {
+              packages.add(p);
+            }
+          });
+      metrics.histogram("page_decoding").recordSince(start);
+      metrics.count("pages", 1);
+      metrics.count("packages_listed", decoded.get());
+      metrics.count("packages_matched", packages.size());
+      return new Page(packages, headers, dates.oldest, dates.newestFirst);
+    }
+
+    private List<Page> fetchAll(List<String> links) throws Exception {
+      // pages are fetched in parallel, but merged in page order
+      try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        Semaphore permits = new Semaphore(this.listConcurrency);
+        List<Future<Page>> futures = new ArrayList<>(links.size());
+        for (String link : links) {
+          futures.add(
+              executor.submit(
+                  () -> {
+                    permits.acquire();
+                    try {
+                      return fetch(pageRequest(link));
+                    } finally {
+                      permits.release();
+                    }
+                  }));
+        }
+        List<Page> pages = new ArrayList<>(links.size());
+        try {
+          for (Future<Page> future : futures) {
+            pages.add(future.get());
+          }
+        } catch (ExecutionException e) {
+          executor.shutdownNow();
+          throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        return pages;
+      }
+    }
+
     static List<Domain.Package> filter(
         String version, String globs, List<Domain.Package> packages) {
-      Predicate<Domain.Package> filter = null;
+      Predicate<Domain.Package> filter = filter(version, globs);
+      return packages.stream().filter(filter).collect(toList());
+    }
+
+    static Predicate<Domain.Package> filter(String version, String globs) {
+      Predicate<Domain.Package> filter = p -> true;
       if (globs != null) {
         filter = Utils.globPredicate(globs);
-        packages = packages.stream().filter(Utils.globPredicate(globs)).collect(toList());
       }
-
       if (version != null) {
-        filter =
-            filter == null
-                ? Utils.versionPredicate(version)
-                : filter.and(Utils.versionPredicate(version));
+        filter = filter.and(Utils.versionPredicate(version));
       }
+      return filter;
+    }
 
-      if (filter != null) {
-        packages = packages.stream().filter(filter).collect(toList());
+    @Override
+    public void delete(Domain.Package p) {
+      DeletionResult result = deleteWithResult(p);
+      if (result.status() == DeletionStatus.FAILED) {
+        throw new IllegalStateException(result.error());
       }
-      return packages;
     }
 
     @Override
-    public void delete(Domain.Package p) {
-      // getting just the host to add it to the destroy URL
-      String base = this.baseUrl.replace(URI.create(this.baseUrl).getPath(), "");
-      HttpRequest request =
-          requestBuilder().DELETE().uri(URI.create(base + p.destroy_url())).build();
-      try {
-        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
-        if (response.statusCode() != 200) {
-          logIndent(yellow("Unexpected response code:" + response.statusCode()));
+    public List<DeletionResult> deleteAll(
+        Collection<Domain.Package> packages, Consumer<DeletionResult> listener) {
+      DeletionResult[] results = new DeletionResult[packages.size()];
+      DeletionEngine engine = new DeletionEngine(this.deleteConcurrency);
+      try (engine) {
+        int i = 0;
+        for (Domain.Package p : packages) {
+          int index = i++;
+          engine.submit(
+              () -> {
+                DeletionResult result = deleteWithResult(p);
+                results[index] = result;
+                listener.accept(result);
+              });
         }
+      }
+      // the failed deletions are in the results, this is e.g. the journal failing to record one
+      if (engine.failure() != null) {
+        throw engine.failure();
+      }
+      // results in the order of the packages, whatever the completion order
+      return Arrays.asList(results);
+    }
+
+    private DeletionResult deleteWithResult(Domain.Package p) {
+      HttpRequest request = deleteRequest(p);
+      AtomicInteger attempts = new AtomicInteger();
+      long start = System.nanoTime();
+      try {
+        DeletionStatus status =
+            retryPolicy.execute(
+                "deleting " + p.filename(),
+                () -> {
+                  attempts.incrementAndGet();
+                  return deletionStatus(
+                      scheduler.send(
+                          client(),
+                          request,
+                          HttpResponse.BodyHandlers.discarding(),
+                          metrics.histogram("delete_request")));
+                });
+        return new DeletionResult(
+            p, status, Duration.ofNanos(System.nanoTime() - start), attempts.get(), null);
       } catch (Exception e) {
-        throw new RuntimeException(e);
+        if (e instanceof InterruptedException) {
+          Thread.currentThread().interrupt();
+        }
+        return failed(p, start, attempts.get(), e);
       }
     }
 
+    private static DeletionStatus deletionStatus(HttpResponse<Void> response) {
+      int statusCode = response.statusCode();
+      if (RetryPolicy.isRetryable(statusCode)) {
+        throw new RetryPolicy.RetryableResponseException(response);
+      } else if (statusCode == 404) {
+        // deleted in the meantime, e.g. by a previous attempt whose response got lost
+        return DeletionStatus.ALREADY_DELETED;
+      } else if (statusCode / 100 != 2) {
+        throw new IllegalStateException("Unexpected response code " + statusCode);
+      }
+      return DeletionStatus.DELETED;
+    }
+
+    private static DeletionResult failed(Domain.Package p, long start, int attempts, Throwable e) {
+      return new DeletionResult(
+          p,
+          DeletionStatus.FAILED,
+          Duration.ofNanos(System.nanoTime() - start),
+          attempts,
+          e.getMessage());
+    }
+
+    PackagecloudPackageAccess deleteConcurrency(int deleteConcurrency) {
+      if (deleteConcurrency <= 0) {
+        throw new IllegalArgumentException(
+            "Delete concurrency must be greater than 0: " + deleteConcurrency);
+      }
+      this.deleteConcurrency = deleteConcurrency;
+      return this;
+    }
+
+    PackagecloudPackageAccess listConcurrency(int listConcurrency) {
+      if (listConcurrency <= 0) {
+        throw new IllegalArgumentException(
+            "List concurrency must be greater than 0: " + listConcurrency);
+      }
+      this.listConcurrency = listConcurrency;
+      return this;
+    }
+
+    PackagecloudPackageAccess requestScheduler(RequestScheduler scheduler) {
+      this.scheduler = scheduler;
+      return this;
+    }
+
+    PackagecloudPackageAccess retryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    PackagecloudPackageAccess httpClient(HttpClient client) {
+      this.client = client;
+      return this;
+    }
+
+    private synchronized HttpClient client() {
+      if (this.client == null) {
+        this.client = newHttpClient();
+      }
+      return this.client;
+    }
+
+    static HttpClient newHttpClient() {
+      return HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+    }
+
+    PackagecloudPackageAccess metrics(Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    PackagecloudPackageAccess listingCache(ListingCache cache) {
+      this.cache = cache;
+      return this;
+    }
+
+    AsyncPackageAccess async() {
+      return async(Math.max(this.listConcurrency, this.deleteConcurrency));
+    }
+
+    AsyncPackageAccess async(int maxInFlightRequests) {
+      return new PackagecloudAsyncPackageAccess(maxInFlightRequests);
+    }
+
+    private HttpRequest listRequest() {
+      Map<String, String> queryParameters = new LinkedHashMap<>();
+      if (this.type != null) {
+        queryParameters.put("filter", this.type);
+      }
+
+      String path = "packages.json";
+
+      if (!queryParameters.isEmpty()) {
+        String parameters =
+            queryParameters.entrySet().stream()
+                .map(e -> e.getKey() + "=" + Utils.encodeHttpParameter(e.getValue()))
+                .collect(Collectors.joining("&"));
+        path = path + "?" + parameters;
+      }
+      return requestBuilder(path).GET().build();
+    }
+
+    private HttpRequest pageRequest(String link) {
+      return requestBuilder().uri(URI.create(link)).GET().build();
+    }
+
+    private HttpRequest deleteRequest(Domain.Package p) {
+      // getting just the host to add it to the destroy URL
+      String base = this.baseUrl.replace(URI.create(this.baseUrl).getPath(), "");
+      return requestBuilder().DELETE().uri(URI.create(base + p.destroy_url())).build();
+    }
+
     private HttpRequest.Builder requestBuilder() {
       return auth(HttpRequest.newBuilder());
     }
@@ -172,5 +675,113 @@ abstract class PackagecloudLogic {
     private HttpRequest.Builder auth(HttpRequest.Builder builder) {
       return builder.setHeader("Authorization", "Basic " + Utils.base64(this.token + ":"));
     }
+
+    private class PackagecloudAsyncPackageAccess implements AsyncPackageAccess {
+
+      private final InFlightLimiter limiter;
+      // decoding reads the response stream, it must not block the HttpClient threads
+      private final ExecutorService decodingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+      private PackagecloudAsyncPackageAccess(int maxInFlightRequests) {
+        this.limiter = new InFlightLimiter(maxInFlightRequests);
+      }
+
+      @Override
+      public CompletableFuture<List<Domain.Package>> list() {
+        List<Domain.Package> packages = Collections.synchronizedList(new ArrayList<>());
+        return listPage(listRequest()).thenCompose(page -> listFrom(page, packages));
+      }
+
+      private CompletableFuture<List<Domain.Package>> listFrom(
+          Page page, List<Domain.Package> packages) {
+        packages.addAll(page.packages());
+        String nextLink = page.link("next");
+        if (nextLink == null) {
+          return CompletableFuture.completedFuture(packages);
+        }
+        List<String> predictedLinks = predictedLinks(nextLink, page.headers());
+        if (predictedLinks.isEmpty()) {
+          return listPage(pageRequest(nextLink)).thenCompose(next -> listFrom(next, packages));
+        }
+        // all the pages are requested at once, the limiter bounds the in-flight requests
+        List<CompletableFuture<Page>> pages =
+            predictedLinks.stream().map(link -> listPage(pageRequest(link))).toList();
+        return CompletableFuture.allOf(pages.toArray(new CompletableFuture<?>[0]))
+            .thenCompose(
+                ignored -> {
+                  for (int i = 0; i < pages.size() - 1; i++) {
+                    packages.addAll(pages.get(i).join().packages());
+                  }
+                  return listFrom(pages.get(pages.size() - 1).join(), packages);
+                });
+      }
+
+      @Override
+      public CompletableFuture<Page> listPage(HttpRequest request) {
+        // the cached copy is read and checked on the decoding executor, like the responses
+        return retryPolicy.executeAsync(
+            "listing " + request.uri(),
+            () ->
+                CompletableFuture.supplyAsync(() -> cached(request), decodingExecutor)
+                    .thenCompose(cached -> limiter.submit(() -> fetchAsync(request, cached))));
+      }
+
+      private CompletableFuture<Page> fetchAsync(
+          HttpRequest request, Optional<ListingCache.Entry> cached) {
+        return scheduler
+            .sendAsync(
+                client(),
+                conditional(request, cached),
+                listBodyHandler(),
+                metrics.histogram("list_request"))
+            .thenComposeAsync(
+                response -> {
+                  // the IOException itself, e.g. a connection reset, is retried
+                  try {
+                    return CompletableFuture.completedFuture(page(request, cached, response));
+                  } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
+                  }
+                },
+                decodingExecutor);
+      }
+
+      @Override
+      public CompletableFuture<DeletionResult> delete(Domain.Package p) {
+        HttpRequest request = deleteRequest(p);
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        return retryPolicy
+            .executeAsync(
+                "deleting " + p.filename(),
+                () ->
+                    limiter.submit(
+                        () -> {
+                          attempts.incrementAndGet();
+                          return scheduler
+                              .sendAsync(
+                                  client(),
+                                  request,
+                                  HttpResponse.BodyHandlers.discarding(),
+                                  metrics.histogram("delete_request"))
+                              .thenApply(PackagecloudPackageAccess::deletionStatus);
+                        }))
+            .handle(
+                (status, throwable) ->
+                    throwable == null
+                        ? new DeletionResult(
+                            p,
+                            status,
+                            Duration.ofNanos(System.nanoTime() - start),
+                            attempts.get(),
+                            null)
+                        : failed(p, start, attempts.get(), throwable));
+      }
+
+      @Override
+      public void close() {
+        decodingExecutor.close();
+      }
+    }
   }
 }
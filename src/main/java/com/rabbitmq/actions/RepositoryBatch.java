@@ -0,0 +1,128 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+// several repositories in one run, each one with its own inputs
+final class RepositoryBatch {
+
+  static final int DEFAULT_CONCURRENCY = 4;
+
+  // inputs that must not be shared by the repositories, suffixed with the repository name
+  private static final Set<String> PER_REPOSITORY_INPUTS =
+      Set.of("state_file", "plan_file", "journal_file");
+
+  private final int concurrency;
+
+  RepositoryBatch(int concurrency) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("Concurrency must be greater than 0: " + concurrency);
+    }
+    this.concurrency = concurrency;
+  }
+
+  // e.g. [{"repository": "erlang", "globs": "*.rpm", "keep_last_n": 2}, ...]
+  static List<Map<String, String>> parse(String json) {
+    JsonArray array = JsonParser.parseString(json).getAsJsonArray();
+    List<Map<String, String>> repositories = new ArrayList<>(array.size());
+    Set<String> names = new HashSet<>();
+    for (JsonElement element : array) {
+      JsonObject object = element.getAsJsonObject();
+      Map<String, String> inputs = new LinkedHashMap<>();
+      for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        JsonElement value = entry.getValue();
+        inputs.put(
+            entry.getKey().toLowerCase(Locale.ENGLISH),
+            value.isJsonNull()
+                ? null
+                : value.isJsonPrimitive() ? value.getAsString() : value.toString());
+      }
+      if (inputs.get("repository") == null || inputs.get("repository").isBlank()) {
+        throw new IllegalArgumentException("Parameter repository must be set for " + object);
+      }
+      // the repositories are processed concurrently and share the suffixed files
+      if (!names.add(inputs.get("repository"))) {
+        throw new IllegalArgumentException(
+            "Repository " + inputs.get("repository") + " is set more than once");
+      }
+      repositories.add(inputs);
+    }
+    return repositories;
+  }
+
+  // the inputs of a repository, then the inputs of the action
+  static Function<String, String> inputs(
+      Map<String, String> repository, Function<String, String> defaults) {
+    return name -> {
+      if (repository.containsKey(name)) {
+        return repository.get(name);
+      }
+      String value = defaults.apply(name);
+      if (value != null && !value.isBlank() && PER_REPOSITORY_INPUTS.contains(name)) {
+        return value + "-" + repository.get("repository");
+      }
+      return value;
+    };
+  }
+
+  List<Summary> run(
+      List<Map<String, String>> repositories,
+      Function<String, String> defaults,
+      Function<Function<String, String>, Summary> action) {
+    Semaphore permits = new Semaphore(concurrency);
+    List<Future<Summary>> futures = new ArrayList<>(repositories.size());
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (Map<String, String> repository : repositories) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  permits.acquireUninterruptibly();
+                  try {
+                    return LogUtils.prefixed(
+                        "[" + repository.get("repository") + "] ",
+                        () -> {
+                          LogUtils.logGreen("Repository " + repository.get("repository"));
+                          try {
+                            return action.apply(inputs(repository, defaults));
+                          } catch (Exception e) {
+                            LogUtils.logRed(
+                                "Error while processing repository "
+                                    + repository.get("repository")
+                                    + ": "
+                                    + e.getMessage());
+                            return Summary.error(repository.get("repository"), e);
+                          }
+                        });
+                  } finally {
+                    permits.release();
+                  }
+                }));
+      }
+    }
+    List<Summary> summaries = new ArrayList<>(futures.size());
+    for (Future<Summary> future : futures) {
+      summaries.add(future.resultNow());
+    }
+    return summaries;
+  }
+
+  record Summary(String repository, int deleted, int failed, String error) {
+
+    static Summary error(String repository, Exception e) {
+      return new Summary(repository, 0, 0, String.valueOf(e.getMessage()));
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+final class RequestScheduler {
+
+  // no ceiling, the rate limiting responses of the API bring the rate down
+  static final double DEFAULT_MAX_REQUESTS_PER_SECOND = Double.POSITIVE_INFINITY;
+
+  private static final double MIN_REQUESTS_PER_SECOND = 0.5;
+  // additive increase step when there is no ceiling
+  private static final double UNCAPPED_RATE_STEP = 1;
+  private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+  private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final double maxRate;
+  // token bucket state, guarded by this
+  private double rate;
+  private double tokens;
+  private long lastRefill;
+  private long pausedUntil;
+  // requests started in the current and the previous second, the actual rate when not paced yet
+  private long windowStart;
+  private int windowRequests;
+  private int previousWindowRequests;
+
+  RequestScheduler() {
+    this(DEFAULT_MAX_REQUESTS_PER_SECOND);
+  }
+
+  RequestScheduler(double maxRequestsPerSecond) {
+    if (maxRequestsPerSecond <= 0) {
+      throw new IllegalArgumentException(
+          "Requests per second must be greater than 0: " + maxRequestsPerSecond);
+    }
+    this.maxRate = maxRequestsPerSecond;
+    this.rate = maxRequestsPerSecond;
+    this.tokens = maxRequestsPerSecond;
+    this.lastRefill = System.nanoTime();
+    this.pausedUntil = this.lastRefill;
+    this.windowStart = this.lastRefill;
+  }
+
+  <T> HttpResponse<T> send(
+      HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+      throws IOException, InterruptedException {
+    return send(client, request, handler, null);
+  }
+
+  // the latency does not include the wait for a permit
+  <T> HttpResponse<T> send(
+      HttpClient client,
+      HttpRequest request,
+      HttpResponse.BodyHandler<T> handler,
+      Metrics.Histogram latencies)
+      throws IOException, InterruptedException {
+    acquire();
+    long start = System.nanoTime();
+    HttpResponse<T> response = client.send(request, handler);
+    if (latencies != null) {
+      latencies.recordSince(start);
+    }
+    observe(response.statusCode(), response.headers());
+    return response;
+  }
+
+  <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+    return sendAsync(client, request, handler, null);
+  }
+
+  <T> CompletableFuture<HttpResponse<T>> sendAsync(
+      HttpClient client,
+      HttpRequest request,
+      HttpResponse.BodyHandler<T> handler,
+      Metrics.Histogram latencies) {
+    return acquireAsync()
+        .thenCompose(
+            ignored -> {
+              long start = System.nanoTime();
+              CompletableFuture<HttpResponse<T>> response = client.sendAsync(request, handler);
+              return latencies == null
+                  ? response
+                  : response.whenComplete((r, e) -> latencies.recordSince(start));
+            })
+        .thenApply(
+            response -> {
+              observe(response.statusCode(), response.headers());
+              return response;
+            });
+  }
+
+  void acquire() throws InterruptedException {
+    long waitNanos;
+    while ((waitNanos = tryAcquire()) > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  CompletableFuture<Void> acquireAsync() {
+    long waitNanos = tryAcquire();
+    if (waitNanos == 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    Executor delayed = CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS);
+    return CompletableFuture.runAsync(() -> {}, delayed).thenCompose(ignored -> acquireAsync());
+  }
+
+  // takes a token and returns 0, or returns how long to wait before trying again
+  private synchronized long tryAcquire() {
+    long now = System.nanoTime();
+    refill(now);
+    if (now - pausedUntil < 0) {
+      return pausedUntil - now;
+    } else if (tokens >= 1) {
+      tokens -= 1;
+      countRequest(now);
+      return 0;
+    } else {
+      return Math.max((long) ((1 - tokens) / rate * ONE_SECOND), 1);
+    }
+  }
+
+  synchronized void observe(int statusCode, HttpHeaders headers) {
+    long now = System.nanoTime();
+    refill(now);
+    if (statusCode == 429) {
+      // multiplicative decrease, and no request at all until Retry-After
+      // one decrease per back-off, the requests in flight get the same 429
+      boolean backingOff = now - pausedUntil < 0;
+      Duration retryAfter = retryAfter(headers).orElse(DEFAULT_RETRY_AFTER);
+      pause(now, retryAfter);
+      if (!backingOff) {
+        // not paced yet, halving the rate the requests were actually sent at
+        double current =
+            Double.isInfinite(rate) ? Math.max(windowRequests, previousWindowRequests) : rate;
+        rate = Math.max(MIN_REQUESTS_PER_SECOND, current / 2);
+      }
+      tokens = 0;
+      return;
+    }
+    OptionalLong remaining = header(headers, "x-ratelimit-remaining", "ratelimit-remaining");
+    Optional<Duration> reset = rateLimitReset(headers);
+    if (remaining.isPresent() && reset.isPresent()) {
+      if (remaining.getAsLong() <= 0) {
+        pause(now, reset.get());
+      } else {
+        // spreading the remaining budget over the rest of the window
+        double seconds = Math.max(reset.get().toMillis() / 1000.0, 1.0);
+        rate = clamp(remaining.getAsLong() / seconds);
+      }
+    } else if (statusCode < 500) {
+      // additive increase
+      rate = clamp(rate + (Double.isInfinite(maxRate) ? UNCAPPED_RATE_STEP : maxRate / 10));
+    }
+  }
+
+  synchronized double rate() {
+    return rate;
+  }
+
+  synchronized Duration pause() {
+    long remaining = pausedUntil - System.nanoTime();
+    return remaining > 0 ? Duration.ofNanos(remaining) : Duration.ZERO;
+  }
+
+  private void countRequest(long now) {
+    long elapsed = now - windowStart;
+    if (elapsed >= ONE_SECOND) {
+      previousWindowRequests = elapsed < 2 * ONE_SECOND ? windowRequests : 0;
+      windowRequests = 0;
+      windowStart = now;
+    }
+    windowRequests++;
+  }
+
+  private void refill(long now) {
+    long elapsed = now - lastRefill;
+    if (elapsed > 0) {
+      tokens = Math.min(Math.max(rate, 1), tokens + elapsed * rate / ONE_SECOND);
+      lastRefill = now;
+    }
+  }
+
+  private void pause(long now, Duration duration) {
+    long until = now + duration.toNanos();
+    if (until - pausedUntil > 0) {
+      pausedUntil = until;
+    }
+  }
+
+  private double clamp(double value) {
+    return Math.min(maxRate, Math.max(MIN_REQUESTS_PER_SECOND, value));
+  }
+
+  static Optional<Duration> retryAfter(HttpHeaders headers) {
+    // e.g. Retry-After: 120 or Retry-After: Wed, 21 Oct 2015 07:28:00 GMT
+    Optional<String> value = headers.firstValue("retry-after").map(String::trim);
+    if (value.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value.get()))));
+    } catch (NumberFormatException e) {
+      try {
+        ZonedDateTime date = ZonedDateTime.parse(value.get(), DateTimeFormatter.RFC_1123_DATE_TIME);
+        Duration duration = Duration.between(ZonedDateTime.now(date.getZone()), date);
+        return Optional.of(duration.isNegative() ? Duration.ZERO : duration);
+      } catch (Exception ex) {
+        return Optional.empty();
+      }
+    }
+  }
+
+  static Optional<Duration> rateLimitReset(HttpHeaders headers) {
+    OptionalLong reset = header(headers, "x-ratelimit-reset", "ratelimit-reset");
+    if (reset.isEmpty()) {
+      return Optional.empty();
+    }
+    long value = reset.getAsLong();
+    // epoch seconds (e.g. 1700000000) or delta seconds (e.g. 42)
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    long seconds = value > nowSeconds / 2 ? value - nowSeconds : value;
+    return Optional.of(Duration.ofSeconds(Math.max(0, seconds)));
+  }
+
+  private static OptionalLong header(HttpHeaders headers, String... names) {
+    for (String name : names) {
+      Optional<String> value = headers.firstValue(name);
+      if (value.isPresent()) {
+        try {
+          return OptionalLong.of(Long.parseLong(value.get().trim()));
+        } catch (NumberFormatException e) {
+          // trying the next one
+        }
+      }
+    }
+    return OptionalLong.empty();
+  }
+}
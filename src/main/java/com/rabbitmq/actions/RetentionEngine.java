@@ -0,0 +1,62 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.Domain.Decision;
+import com.rabbitmq.actions.Domain.PackageVersion;
+import java.util.*;
+
+// evaluates all the retention policies in a single traversal of the versions
+final class RetentionEngine {
+
+  private final List<RetentionPolicy> policies;
+  private final VersionKeys versionKeys;
+
+  RetentionEngine(List<RetentionPolicy> policies, VersionKeys versionKeys) {
+    this.policies = List.copyOf(policies);
+    this.versionKeys = versionKeys;
+  }
+
+  Map<String, Retention> evaluate(Collection<PackageVersion> versions) {
+    List<PackageVersion> traversal = new ArrayList<>(versions);
+    if (policies.stream().anyMatch(RetentionPolicy::ordered)) {
+      // from the newest version to the oldest
+      traversal.sort(
+          Comparator.comparing(
+                  (PackageVersion packageVersion) -> versionKeys.get(packageVersion.version))
+              .reversed());
+    }
+    Map<String, Retention> retentions = new HashMap<>(versions.size() * 4 / 3 + 1);
+    for (PackageVersion version : traversal) {
+      // the first policy keeping the version gives the reason, the next ones still see it
+      // (e.g. the latest of a major kept by keep_last_n), unless they see only the candidates
+      String reason = null;
+      for (RetentionPolicy policy : policies) {
+        if (reason == null || !policy.candidatesOnly()) {
+          String policyReason = policy.keep(version);
+          if (reason == null) {
+            reason = policyReason;
+          }
+        }
+      }
+      retentions.put(
+          version.version,
+          reason == null ? Retention.DELETE : new Retention(decision(reason), reason));
+    }
+    return retentions;
+  }
+
+  private static Decision decision(String reason) {
+    return RetentionPolicy.LATEST_MINOR_PATCH.equals(reason)
+        ? Decision.KEEP_LATEST_MINOR_PATCH
+        : Decision.KEEP;
+  }
+
+  record Retention(Decision decision, String reason) {
+
+    static final Retention DELETE = new Retention(Decision.DELETE, null);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.Domain.PackageVersion;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// a rule to keep versions, the RetentionEngine deletes the versions no policy keeps
+interface RetentionPolicy {
+
+  String LATEST_MINOR_PATCH = "latest minor patch";
+
+  // the reason to keep the version, or null to let the next policies decide
+  String keep(PackageVersion version);
+
+  // whether the policy sees only the versions the previous policies do not keep
+  default boolean candidatesOnly() {
+    return false;
+  }
+
+  // whether the versions must be evaluated from the newest to the oldest
+  default boolean ordered() {
+    return false;
+  }
+
+  static RetentionPolicy keepLastN(
+      Collection<PackageVersion> versions,
+      int keepLastN,
+      boolean orderByVersion,
+      VersionKeys versionKeys) {
+    return new KeepLastN(versions, keepLastN, orderByVersion, versionKeys);
+  }
+
+  static RetentionPolicy keepLatestPatchPerMinor(String latestMinor, VersionKeys versionKeys) {
+    return new KeepLatestPatchPerMinor(latestMinor, versionKeys);
+  }
+
+  static RetentionPolicy keepLatestPerMajor(VersionKeys versionKeys) {
+    return new KeepLatestPerMajor(versionKeys);
+  }
+
+  static RetentionPolicy keepNewerThan(Duration age, ZonedDateTime now) {
+    return new KeepNewerThan(age, now);
+  }
+
+  static RetentionPolicy keepMatching(String filter) {
+    return new KeepMatching(filter);
+  }
+
+  final class KeepLastN implements RetentionPolicy {
+
+    private final Set<String> toKeep = new HashSet<>();
+    private final String reason;
+
+    private KeepLastN(
+        Collection<PackageVersion> versions,
+        int keepLastN,
+        boolean orderByVersion,
+        VersionKeys versionKeys) {
+      // selected up front with a bounded heap, no need to evaluate the versions in order
+      versions.forEach(v -> toKeep.add(v.version));
+      List<String> toDelete =
+          PackagecloudDeletePackageAction.selectForDeletion(
+              versions, keepLastN, orderByVersion, versionKeys);
+      toDelete.forEach(toKeep::remove);
+      this.reason = "last " + keepLastN + " version(s)";
+    }
+
+    @Override
+    public String keep(PackageVersion version) {
+      return toKeep.contains(version.version) ? reason : null;
+    }
+  }
+
+  // keeps the newest version of each minor not kept by the previous policies
+  final class KeepLatestPatchPerMinor implements RetentionPolicy {
+
+    private final String latestMinor;
+    private final VersionKeys versionKeys;
+    private final Set<String> seenMinors = new HashSet<>();
+
+    private KeepLatestPatchPerMinor(String latestMinor, VersionKeys versionKeys) {
+      this.latestMinor = latestMinor;
+      this.versionKeys = versionKeys;
+    }
+
+    @Override
+    public String keep(PackageVersion version) {
+      String minor = versionKeys.get(version.version).minor();
+      // the latest minor is covered by keep_last_n
+      if (!minor.equals(latestMinor) && seenMinors.add(minor)) {
+        return LATEST_MINOR_PATCH;
+      }
+      return null;
+    }
+
+    @Override
+    public boolean ordered() {
+      return true;
+    }
+
+    // like the previous planning, computed over the deletion candidates of keep_last_n
+    @Override
+    public boolean candidatesOnly() {
+      return true;
+    }
+  }
+
+  final class KeepLatestPerMajor implements RetentionPolicy {
+
+    private final VersionKeys versionKeys;
+    private final Set<String> seenMajors = new HashSet<>();
+
+    private KeepLatestPerMajor(VersionKeys versionKeys) {
+      this.versionKeys = versionKeys;
+    }
+
+    @Override
+    public String keep(PackageVersion version) {
+      String major = versionKeys.get(version.version).major();
+      return seenMajors.add(major) ? "latest of major " + major : null;
+    }
+
+    @Override
+    public boolean ordered() {
+      return true;
+    }
+  }
+
+  final class KeepNewerThan implements RetentionPolicy {
+
+    private final ZonedDateTime limit;
+    private final String reason;
+
+    private KeepNewerThan(Duration age, ZonedDateTime now) {
+      this.limit = now.minus(age);
+      this.reason = "newer than " + age.toDays() + " day(s)";
+    }
+
+    @Override
+    public String keep(PackageVersion version) {
+      return version.lastPackageDate != null && version.lastPackageDate.isAfter(limit)
+          ? reason
+          : null;
+    }
+  }
+
+  final class KeepMatching implements RetentionPolicy {
+
+    private final VersionFilter filter;
+
+    private KeepMatching(String filter) {
+      this.filter = VersionFilter.compile(filter);
+    }
+
+    @Override
+    public String keep(PackageVersion version) {
+      return filter.matches(version.version) ? "pinned" : null;
+    }
+  }
+}
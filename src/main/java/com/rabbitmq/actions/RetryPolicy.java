@@ -0,0 +1,168 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.LogUtils.logIndent;
+import static com.rabbitmq.actions.LogUtils.yellow;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+final class RetryPolicy {
+
+  static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+  static final RetryPolicy DEFAULT =
+      new RetryPolicy(
+          DEFAULT_MAX_ATTEMPTS,
+          Duration.ofMillis(500),
+          Duration.ofSeconds(30),
+          Duration.ofMinutes(5));
+
+  static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+
+  private final int maxAttempts;
+  private final Duration initialDelay, maxDelay, timeBudget;
+
+  RetryPolicy(int maxAttempts, Duration initialDelay, Duration maxDelay, Duration timeBudget) {
+    if (maxAttempts <= 0) {
+      throw new IllegalArgumentException("Max attempts must be greater than 0: " + maxAttempts);
+    }
+    this.maxAttempts = maxAttempts;
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.timeBudget = timeBudget;
+  }
+
+  RetryPolicy withMaxAttempts(int maxAttempts) {
+    return new RetryPolicy(maxAttempts, this.initialDelay, this.maxDelay, this.timeBudget);
+  }
+
+  <T> T execute(String description, Operation<T> operation) throws Exception {
+    long start = System.nanoTime();
+    int attempt = 0;
+    while (true) {
+      attempt++;
+      try {
+        return operation.call();
+      } catch (Exception e) {
+        Duration delay = retryDelay(description, attempt, start, e);
+        if (delay == null) {
+          throw e;
+        }
+        Thread.sleep(delay);
+      }
+    }
+  }
+
+  <T> CompletableFuture<T> executeAsync(
+      String description, Supplier<CompletableFuture<T>> operation) {
+    return executeAsync(description, operation, 1, System.nanoTime());
+  }
+
+  private <T> CompletableFuture<T> executeAsync(
+      String description, Supplier<CompletableFuture<T>> operation, int attempt, long start) {
+    CompletableFuture<T> result;
+    try {
+      result = operation.get();
+    } catch (RuntimeException e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+    return result
+        .handle(
+            (value, throwable) -> {
+              if (throwable == null) {
+                return CompletableFuture.completedFuture(value);
+              }
+              Throwable cause =
+                  throwable instanceof CompletionException && throwable.getCause() != null
+                      ? throwable.getCause()
+                      : throwable;
+              Duration delay =
+                  cause instanceof Exception e ? retryDelay(description, attempt, start, e) : null;
+              if (delay == null) {
+                return CompletableFuture.<T>failedFuture(cause);
+              }
+              Executor delayed =
+                  CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS);
+              return CompletableFuture.runAsync(() -> {}, delayed)
+                  .thenCompose(ignored -> executeAsync(description, operation, attempt + 1, start));
+            })
+        .thenCompose(Function.identity());
+  }
+
+  // returns null when the failure is final
+  private Duration retryDelay(String description, int attempt, long start, Exception e) {
+    Duration delay = delay(attempt, e);
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+    if (!isRetryable(e)
+        || attempt >= maxAttempts
+        || elapsed.plus(delay).compareTo(timeBudget) > 0) {
+      return null;
+    }
+    logIndent(
+        yellow(
+            String.format(
+                "Retrying %s in %d ms (attempt %d/%d): %s",
+                description, delay.toMillis(), attempt + 1, maxAttempts, e.getMessage())));
+    return delay;
+  }
+
+  Duration delay(int attempt, Exception e) {
+    // exponential backoff with full jitter, but never shorter than what the server asked for
+    long ceiling =
+        Math.min(maxDelay.toMillis(), initialDelay.toMillis() << Math.min(attempt - 1, 20));
+    Duration delay = Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    if (e instanceof RetryableResponseException r
+        && r.retryAfter() != null
+        && r.retryAfter().compareTo(delay) > 0) {
+      delay = r.retryAfter();
+    }
+    return delay;
+  }
+
+  static boolean isRetryable(Exception e) {
+    // timeouts and connection errors are IOExceptions, possibly wrapped by a stream or a callback
+    return e instanceof RetryableResponseException
+        || e instanceof IOException
+        || e instanceof UncheckedIOException;
+  }
+
+  static boolean isRetryable(int statusCode) {
+    return statusCode == 429 || statusCode >= 500;
+  }
+
+  @FunctionalInterface
+  interface Operation<T> {
+
+    T call() throws Exception;
+  }
+
+  static class RetryableResponseException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Duration retryAfter;
+
+    RetryableResponseException(HttpResponse<?> response) {
+      super("Unexpected response code " + response.statusCode() + " for " + response.uri());
+      this.retryAfter = RequestScheduler.retryAfter(response.headers()).orElse(null);
+    }
+
+    Duration retryAfter() {
+      return retryAfter;
+    }
+  }
+}
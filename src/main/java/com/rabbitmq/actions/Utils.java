@@ -6,6 +6,10 @@
 package com.rabbitmq.actions;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URLEncoder;
@@ -13,22 +17,19 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystems;
-import java.nio.file.Path;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.Base64;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 
 abstract class Utils {
 
   static final Gson GSON =
       new GsonBuilder()
           .registerTypeAdapter(ZonedDateTime.class, new ZonedDateTimeDeserializer())
+          .registerTypeAdapter(ZonedDateTime.class, new ZonedDateTimeSerializer())
           .create();
 
   private Utils() {}
@@ -41,22 +42,31 @@ abstract class Utils {
     return Base64.getEncoder().encodeToString(in.getBytes(StandardCharsets.UTF_8));
   }
 
+  static void decodePackages(InputStream in, Consumer<Domain.Package> consumer) throws IOException {
+    // decodes packages one by one, without holding the whole body
+    try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        consumer.accept(GSON.fromJson(reader, Domain.Package.class));
+      }
+      reader.endArray();
+    } catch (JsonSyntaxException e) {
+      // Gson wraps the errors of the stream, e.g. a connection reset in the middle of a package
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw e;
+    }
+  }
+
   static Predicate<Domain.Package> globPredicate(String globs) {
-    globs = globs == null || globs.isBlank() ? "*" : globs;
-    return Arrays.stream(globs.split(","))
-        .map(String::trim)
-        .map(g -> "glob:" + g)
-        .map(g -> FileSystems.getDefault().getPathMatcher(g))
-        .map(
-            pathMatcher ->
-                (Predicate<Domain.Package>)
-                    p -> pathMatcher.matches(Path.of(p.filename()).getFileName()))
-        .reduce(aPackage -> false, Predicate::or);
+    GlobMatcher matcher = GlobMatcher.compile(globs);
+    return p -> matcher.matches(p.filename());
   }
 
   static Predicate<Domain.Package> versionPredicate(String version) {
-    Pattern pattern = Pattern.compile(version, Pattern.CASE_INSENSITIVE);
-    return p -> pattern.matcher(p.version()).find();
+    VersionFilter filter = VersionFilter.compile(version);
+    return p -> filter.matches(p.version());
   }
 
   static void testSequence() {
@@ -96,4 +106,13 @@ abstract class Utils {
       return ZonedDateTime.parse(json.getAsString(), DateTimeFormatter.ISO_ZONED_DATE_TIME);
     }
   }
+
+  static class ZonedDateTimeSerializer implements JsonSerializer<ZonedDateTime> {
+
+    @Override
+    public JsonElement serialize(
+        ZonedDateTime src, Type typeOfSrc, JsonSerializationContext context) {
+      return new JsonPrimitive(DateTimeFormatter.ISO_ZONED_DATE_TIME.format(src));
+    }
+  }
 }
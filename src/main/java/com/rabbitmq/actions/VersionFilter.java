@@ -0,0 +1,199 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// version_filter, a case-insensitive regex, with a literal fast path and one result per version
+final class VersionFilter {
+
+  // any character, for an unescaped . in the filter
+  private static final int ANY = -1;
+
+  private final Pattern pattern;
+  // null when the filter is a real regex
+  private final Literal[] literals;
+  private final Map<String, Boolean> results = new ConcurrentHashMap<>();
+
+  private VersionFilter(Pattern pattern, Literal[] literals) {
+    this.pattern = pattern;
+    this.literals = literals;
+  }
+
+  static VersionFilter compile(String filter) {
+    // compiled in any case, to report invalid filters the same way
+    Pattern pattern = Pattern.compile(filter, Pattern.CASE_INSENSITIVE);
+    List<Literal> literals = new ArrayList<>();
+    // e.g. ^25\.|^26\.2, an escaped | ends a branch with \ and is left to the regex
+    for (String branch : filter.split("\\|", -1)) {
+      Literal literal = Literal.parse(branch);
+      if (literal == null) {
+        return new VersionFilter(pattern, null);
+      }
+      literals.add(literal);
+    }
+    return new VersionFilter(pattern, literals.toArray(new Literal[0]));
+  }
+
+  boolean isLiteral() {
+    return literals != null;
+  }
+
+  boolean matches(String version) {
+    Boolean result = results.get(version);
+    if (result == null) {
+      result = evaluate(version);
+      results.put(version, result);
+    }
+    return result;
+  }
+
+  private boolean evaluate(String version) {
+    if (literals == null || hasLineTerminator(version)) {
+      return pattern.matcher(version).find();
+    }
+    for (Literal literal : literals) {
+      if (literal.find(version)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // . and $ behave differently around line terminators
+  private static boolean hasLineTerminator(String version) {
+    for (int i = 0; i < version.length(); i++) {
+      if (isLineTerminator(version.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  // e.g. ^25\.1\.* => starts with 25.1, the trailing \.* matches nothing
+  private static final class Literal {
+
+    private final boolean startAnchor;
+    private final boolean endAnchor;
+    // lower-case ASCII characters or ANY
+    private final int[] characters;
+
+    private Literal(boolean startAnchor, boolean endAnchor, int[] characters) {
+      this.startAnchor = startAnchor;
+      this.endAnchor = endAnchor;
+      this.characters = characters;
+    }
+
+    // null if the branch is not a literal
+    static Literal parse(String branch) {
+      int start = 0;
+      int end = branch.length();
+      boolean startAnchor = branch.startsWith("^");
+      if (startAnchor) {
+        start++;
+      }
+      boolean endAnchor = end > start && branch.charAt(end - 1) == '$' && !escaped(branch, end - 1);
+      if (endAnchor) {
+        end--;
+      }
+      int[] characters = new int[end - start];
+      boolean[] optional = new boolean[end - start];
+      int size = 0;
+      for (int i = start; i < end; i++) {
+        char c = branch.charAt(i);
+        if (c == '\\') {
+          if (i + 1 == end) {
+            return null;
+          }
+          c = branch.charAt(++i);
+          if (Character.isLetterOrDigit(c) || c > 127) {
+            // e.g. \d or \Q
+            return null;
+          }
+          characters[size++] = lowerCase(c);
+        } else if (c == '.') {
+          characters[size++] = ANY;
+        } else if (c == '*' || c == '?') {
+          if (size == 0 || optional[size - 1]) {
+            // e.g. a?? or a*?
+            return null;
+          }
+          optional[size - 1] = true;
+        } else if ("^$+()[]{}".indexOf(c) >= 0 || c > 127) {
+          return null;
+        } else {
+          characters[size++] = lowerCase(c);
+        }
+      }
+      if (!endAnchor) {
+        // an optional suffix does not change the result of find()
+        while (size > 0 && optional[size - 1]) {
+          size--;
+        }
+      }
+      for (int i = 0; i < size; i++) {
+        if (optional[i]) {
+          return null;
+        }
+      }
+      int[] result = new int[size];
+      System.arraycopy(characters, 0, result, 0, size);
+      return new Literal(startAnchor, endAnchor, result);
+    }
+
+    private static boolean escaped(String value, int index) {
+      int backslashes = 0;
+      while (index - backslashes > 0 && value.charAt(index - backslashes - 1) == '\\') {
+        backslashes++;
+      }
+      return backslashes % 2 == 1;
+    }
+
+    boolean find(String version) {
+      int length = version.length();
+      int n = characters.length;
+      if (length < n) {
+        return false;
+      } else if (startAnchor && endAnchor) {
+        return length == n && regionMatches(version, 0);
+      } else if (startAnchor) {
+        return regionMatches(version, 0);
+      } else if (endAnchor) {
+        return regionMatches(version, length - n);
+      }
+      for (int offset = 0; offset <= length - n; offset++) {
+        if (regionMatches(version, offset)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean regionMatches(String version, int offset) {
+      for (int i = 0; i < characters.length; i++) {
+        char c = version.charAt(offset + i);
+        int expected = characters[i];
+        if (expected != ANY && lowerCase(c) != expected) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // like Pattern.CASE_INSENSITIVE, only US-ASCII characters
+    private static int lowerCase(char c) {
+      return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// parses each distinct version string once, for all the planning stages
+final class VersionKeys {
+
+  private final Map<String, VersionKey> keys = new ConcurrentHashMap<>();
+
+  VersionKey get(String version) {
+    return keys.computeIfAbsent(version, VersionKey::new);
+  }
+
+  Comparator<String> comparator() {
+    return Comparator.comparing(this::get);
+  }
+
+  int size() {
+    return keys.size();
+  }
+
+  static String curate(String version) {
+    // e.g. 1:22.3.4.3-1, removing 1:
+    return version.startsWith("1:") ? version.substring(2) : version;
+  }
+
+  static String minor(String version) {
+    String curatedVersion = curate(version);
+    // e.g. 22.3-1, removing -1
+    int dash = curatedVersion.lastIndexOf('-');
+    curatedVersion = dash >= 0 ? curatedVersion.substring(0, dash) : curatedVersion;
+    int firstDot = curatedVersion.indexOf('.');
+    if (firstDot < 0) {
+      return curatedVersion;
+    }
+    int secondDot = curatedVersion.indexOf('.', firstDot + 1);
+    return secondDot < 0 ? curatedVersion : curatedVersion.substring(0, secondDot);
+  }
+
+  static String major(String version) {
+    String curatedVersion = curate(version);
+    // e.g. 22.3-1, 22
+    for (int i = 0; i < curatedVersion.length(); i++) {
+      char c = curatedVersion.charAt(i);
+      if (c == '.' || c == '-') {
+        return curatedVersion.substring(0, i);
+      }
+    }
+    return curatedVersion;
+  }
+
+  static final class VersionKey implements Comparable<VersionKey> {
+
+    private final String version;
+    private final String curated;
+    private final String minor;
+    private final String major;
+    // null when the version has qualifiers (e.g. 3.13.0-rc.1)
+    private final int[] numeric;
+    // parsed on demand, only needed when one of the compared versions has qualifiers
+    private volatile ComparableVersion comparable;
+
+    private VersionKey(String version) {
+      this.version = version;
+      this.curated = curate(version);
+      this.minor = VersionKeys.minor(version);
+      this.major = VersionKeys.major(version);
+      this.numeric = NumericVersion.pack(this.curated);
+    }
+
+    @Override
+    public int compareTo(VersionKey other) {
+      if (this.numeric != null && other.numeric != null) {
+        return NumericVersion.compare(this.numeric, other.numeric);
+      }
+      return this.comparable().compareTo(other.comparable());
+    }
+
+    String version() {
+      return version;
+    }
+
+    String curated() {
+      return curated;
+    }
+
+    String minor() {
+      return minor;
+    }
+
+    String major() {
+      return major;
+    }
+
+    ComparableVersion comparable() {
+      ComparableVersion result = this.comparable;
+      if (result == null) {
+        result = new ComparableVersion(this.curated);
+        this.comparable = result;
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class DeletionEngineTest {
+
+  @Test
+  void inFlightDeletionsShouldNeverExceedConcurrency() {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    try (DeletionEngine engine = new DeletionEngine(3)) {
+      for (int i = 0; i < 20; i++) {
+        engine.submit(
+            () -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              sleep(20);
+              inFlight.decrementAndGet();
+            });
+      }
+    }
+    assertThat(maxInFlight.get()).isEqualTo(3);
+  }
+
+  @Test
+  void failedDeletionsShouldBeCountedAndReleaseTheirPermit() {
+    DeletionEngine engine = new DeletionEngine(1);
+    try (engine) {
+      for (int i = 0; i < 10; i++) {
+        int index = i;
+        engine.submit(
+            () -> {
+              if (index % 3 == 0) {
+                throw new IllegalStateException("deletion " + index + " failed");
+              }
+            });
+      }
+    }
+    assertThat(engine.succeeded()).isEqualTo(6);
+    assertThat(engine.failed()).isEqualTo(4);
+    assertThat(engine.failure()).hasMessage("deletion 0 failed");
+  }
+
+  @Test
+  void closeShouldWaitForSubmittedDeletions() {
+    AtomicInteger completed = new AtomicInteger();
+    DeletionEngine engine = new DeletionEngine(4);
+    try (engine) {
+      for (int i = 0; i < 8; i++) {
+        engine.submit(
+            () -> {
+              sleep(50);
+              completed.incrementAndGet();
+            });
+      }
+    }
+    assertThat(completed.get()).isEqualTo(8);
+    assertThat(engine.succeeded()).isEqualTo(8);
+    assertThat(engine.failure()).isNull();
+  }
+
+  @Test
+  void concurrencyShouldBePositive() {
+    assertThatThrownBy(() -> new DeletionEngine(0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.PackagecloudLogic.DeletionStatus.ALREADY_DELETED;
+import static com.rabbitmq.actions.PackagecloudLogic.DeletionStatus.DELETED;
+import static com.rabbitmq.actions.PackagecloudLogic.DeletionStatus.FAILED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.rabbitmq.actions.Domain.Decision;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DeletionJournalTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void pendingShouldBeTheIntendedDeletionsNotCompleted() {
+    Path file = directory.resolve("journal");
+    List<Domain.Package> packages = IntStream.range(0, 5).mapToObj(i -> p("p-" + i)).toList();
+    try (DeletionJournal journal = DeletionJournal.open(file, "erlang", new Metrics())) {
+      assertThat(journal.pending()).isEmpty();
+      journal.intend(packages);
+      journal.completed(result(packages.get(0), DELETED));
+      journal.completed(result(packages.get(2), ALREADY_DELETED));
+      journal.completed(result(packages.get(3), FAILED));
+    }
+    try (DeletionJournal journal = DeletionJournal.open(file, "erlang", new Metrics())) {
+      // failures are retried
+      assertThat(journal.pending())
+          .extracting(Domain.Package::filename)
+          .containsExactly("p-1", "p-3", "p-4");
+      Domain.Package p = journal.pending().get(0);
+      assertThat(p.destroy_url()).isEqualTo("/api/v1/repos/rabbitmq/erlang/el/8/p-1");
+      assertThat(p.package_url()).isEqualTo("/api/v1/repos/rabbitmq/erlang/package/p-1");
+      assertThat(p.version()).isEqualTo("26.2.5");
+      // already in the journal
+      journal.intend(packages);
+      journal.completed(result(packages.get(1), DELETED));
+    }
+    try (DeletionJournal journal = DeletionJournal.open(file, "erlang", new Metrics())) {
+      assertThat(journal.pending())
+          .extracting(Domain.Package::filename)
+          .containsExactly("p-3", "p-4");
+      journal.complete();
+    }
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  void tornRecordShouldBeIgnoredAndOverwritten() throws Exception {
+    Path file = directory.resolve("journal");
+    Domain.Package p1 = p("p-1");
+    Domain.Package p2 = p("p-2");
+    try (DeletionJournal journal = DeletionJournal.open(file, "erlang", new Metrics())) {
+      journal.intend(List.of(p1, p2));
+    }
+    // the process died while writing the completion of p-1
+    Files.writeString(
+        file,
+        "D\t" + p1.destroy_url().substring(0, 10),
+        StandardCharsets.UTF_8,
+        StandardOpenOption.APPEND);
+    try (DeletionJournal journal = DeletionJournal.open(file, "erlang", new Metrics())) {
+      assertThat(journal.pending())
+          .extracting(Domain.Package::filename)
+          .containsExactly("p-1", "p-2");
+      journal.completed(result(p2, DELETED));
+    }
+    try (DeletionJournal journal = DeletionJournal.open(file, "erlang", new Metrics())) {
+      assertThat(journal.pending()).extracting(Domain.Package::filename).containsExactly("p-1");
+    }
+    assertThat(Files.readAllLines(file)).allMatch(line -> line.split("\t").length >= 2);
+  }
+
+  @Test
+  void journalOfAnotherRepositoryShouldBeRejected() {
+    Path file = directory.resolve("journal");
+    try (DeletionJournal journal = DeletionJournal.open(file, "erlang", new Metrics())) {
+      journal.intend(List.of(p("p-1")));
+    }
+    assertThatThrownBy(() -> DeletionJournal.open(file, "rabbitmq-server", new Metrics()))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("erlang");
+  }
+
+  @Test
+  void completionsShouldBeSyncedInBatches() {
+    Path file = directory.resolve("journal");
+    Metrics metrics = new Metrics();
+    List<Domain.Package> packages = IntStream.range(0, 7).mapToObj(i -> p("p-" + i)).toList();
+    try (DeletionJournal journal =
+        DeletionJournal.open(file, "erlang", 3, Duration.ofHours(1), metrics)) {
+      // the header, then the intents
+      journal.intend(packages);
+      assertThat(metrics.counter("journal_syncs")).isEqualTo(2);
+      packages.forEach(p -> journal.completed(result(p, DELETED)));
+      assertThat(metrics.counter("journal_syncs")).isEqualTo(4);
+    }
+    // the last completion on close
+    assertThat(metrics.counter("journal_syncs")).isEqualTo(5);
+  }
+
+  @Test
+  void runShouldResumeFromTheJournalWithoutListing() throws Exception {
+    Path file = directory.resolve("journal");
+    try (FakePackagecloud packagecloud = new FakePackagecloud(20).start()) {
+      List<Domain.Package> packages = packagecloud.remaining();
+      // killed after the deletion of 2 of the 12 packages to delete
+      try (DeletionJournal journal =
+          DeletionJournal.open(file, FakePackagecloud.REPOSITORY, new Metrics())) {
+        journal.intend(packages.subList(8, 20));
+        journal.completed(result(packages.get(8), DELETED));
+        journal.completed(result(packages.get(9), DELETED));
+      }
+
+      Map<String, String> inputs = new HashMap<>();
+      inputs.put("username", FakePackagecloud.USERNAME);
+      inputs.put("repository", FakePackagecloud.REPOSITORY);
+      inputs.put("token", "abcde");
+      inputs.put("api_url", packagecloud.apiUrl());
+      inputs.put("max_requests_per_second", "1000");
+      inputs.put("journal_file", file.toString());
+      inputs.put("do_delete", "true");
+      RepositoryBatch.Summary summary =
+          PackagecloudDeletePackageAction.run(inputs::get, null, null, new Metrics());
+
+      assertThat(summary.deleted()).isEqualTo(10);
+      assertThat(packagecloud.requests("GET")).isZero();
+      assertThat(packagecloud.requests("DELETE")).isEqualTo(10);
+      assertThat(packagecloud.remaining()).containsExactlyElementsOf(packages.subList(0, 10));
+      assertThat(file).doesNotExist();
+    }
+  }
+
+  @Test
+  void dryRunShouldNotResumeFromTheJournal() throws Exception {
+    Path file = directory.resolve("journal");
+    try (FakePackagecloud packagecloud = new FakePackagecloud(20).start()) {
+      List<Domain.Package> packages = packagecloud.remaining();
+      try (DeletionJournal journal =
+          DeletionJournal.open(file, FakePackagecloud.REPOSITORY, new Metrics())) {
+        journal.intend(packages.subList(8, 20));
+        journal.completed(result(packages.get(8), DELETED));
+      }
+      byte[] content = Files.readAllBytes(file);
+
+      Map<String, String> inputs = new HashMap<>();
+      inputs.put("username", FakePackagecloud.USERNAME);
+      inputs.put("repository", FakePackagecloud.REPOSITORY);
+      inputs.put("token", "abcde");
+      inputs.put("api_url", packagecloud.apiUrl());
+      inputs.put("max_requests_per_second", "1000");
+      inputs.put("journal_file", file.toString());
+      inputs.put("keep_last_n", "1");
+      inputs.put("do_delete", "false");
+      PackagecloudDeletePackageAction.run(inputs::get, null, null, new Metrics());
+
+      assertThat(packagecloud.requests("DELETE")).isZero();
+      assertThat(packagecloud.remaining()).hasSize(20);
+      // left for the next run
+      assertThat(Files.readAllBytes(file)).isEqualTo(content);
+      assertThat(DeletionJournal.pending(file, FakePackagecloud.REPOSITORY)).hasSize(11);
+    }
+  }
+
+  @Test
+  void applyShouldResumeFromTheJournalThenApplyThePlan() throws Exception {
+    Path file = directory.resolve("journal");
+    Path planFile = directory.resolve("plan.json");
+    try (FakePackagecloud packagecloud = new FakePackagecloud(20).start()) {
+      List<Domain.Package> packages = packagecloud.remaining();
+      try (DeletionJournal journal =
+          DeletionJournal.open(file, FakePackagecloud.REPOSITORY, new Metrics())) {
+        journal.intend(packages.subList(16, 20));
+      }
+      DeletionPlan plan = new DeletionPlan(FakePackagecloud.REPOSITORY, null);
+      packages
+          .subList(8, 12)
+          .forEach(p -> plan.add(p, new RetentionEngine.Retention(Decision.DELETE, null)));
+      plan.write(planFile);
+
+      Map<String, String> inputs = new HashMap<>();
+      inputs.put("username", FakePackagecloud.USERNAME);
+      inputs.put("repository", FakePackagecloud.REPOSITORY);
+      inputs.put("token", "abcde");
+      inputs.put("api_url", packagecloud.apiUrl());
+      inputs.put("max_requests_per_second", "1000");
+      inputs.put("journal_file", file.toString());
+      inputs.put("mode", "apply");
+      inputs.put("plan_file", planFile.toString());
+      RepositoryBatch.Summary summary =
+          PackagecloudDeletePackageAction.run(inputs::get, null, null, new Metrics());
+
+      assertThat(summary.deleted()).isEqualTo(8);
+      assertThat(packagecloud.requests("GET")).isZero();
+      assertThat(packagecloud.requests("DELETE")).isEqualTo(8);
+      assertThat(packagecloud.remaining())
+          .containsExactlyElementsOf(
+              Stream.concat(packages.subList(0, 8).stream(), packages.subList(12, 16).stream())
+                  .toList());
+      assertThat(file).doesNotExist();
+    }
+  }
+
+  private static Domain.Package p(String filename) {
+    Domain.Package p = new Domain.Package();
+    p.setFilename(filename);
+    p.setVersion("26.2.5");
+    p.setDestroyUrl("/api/v1/repos/rabbitmq/erlang/el/8/" + filename);
+    p.setPackageUrl("/api/v1/repos/rabbitmq/erlang/package/" + filename);
+    return p;
+  }
+
+  private static PackagecloudLogic.DeletionResult result(
+      Domain.Package p, PackagecloudLogic.DeletionStatus status) {
+    return new PackagecloudLogic.DeletionResult(p, status, Duration.ZERO, 1, null);
+  }
+}
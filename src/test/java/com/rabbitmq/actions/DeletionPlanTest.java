@@ -0,0 +1,104 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DeletionPlanTest {
+
+  @Test
+  void applyShouldDeleteThePlannedPackagesWithoutListing(@TempDir Path directory) throws Exception {
+    Path planFile = directory.resolve("plan.json");
+    try (FakePackagecloud packagecloud = new FakePackagecloud(40).perPage(10).start()) {
+      Map<String, String> inputs = inputs(packagecloud);
+      inputs.put("keep_last_n", "2");
+      inputs.put("do_delete", "true");
+      inputs.put("mode", "plan");
+      inputs.put("plan_file", planFile.toString());
+
+      RepositoryBatch.Summary planned =
+          PackagecloudDeletePackageAction.run(inputs::get, null, null, new Metrics());
+      // 10 versions of 4 packages, the packages of the last 2 versions are kept
+      assertThat(planned.deleted()).isEqualTo(packagecloud.packageCount() - 8);
+      assertThat(packagecloud.remaining()).hasSize(packagecloud.packageCount());
+      assertThat(packagecloud.requests("DELETE")).isZero();
+
+      DeletionPlan plan = DeletionPlan.read(planFile);
+      assertThat(plan.repository).isEqualTo(FakePackagecloud.REPOSITORY);
+      assertThat(plan.packages).hasSize(packagecloud.packageCount());
+      assertThat(plan.packages)
+          .filteredOn(entry -> DeletionPlan.KEEP.equals(entry.decision))
+          .hasSize(8)
+          .allMatch(entry -> "last 2 version(s)".equals(entry.reason))
+          .allMatch(entry -> entry.destroy_url == null);
+      assertThat(plan.packagesToDelete())
+          .hasSize(planned.deleted())
+          .allMatch(p -> p.destroy_url() != null && p.package_url() != null);
+
+      long listings = packagecloud.requests("GET");
+      inputs.put("mode", "apply");
+      RepositoryBatch.Summary applied =
+          PackagecloudDeletePackageAction.run(inputs::get, null, null, new Metrics());
+      assertThat(applied.deleted()).isEqualTo(planned.deleted());
+      assertThat(applied.failed()).isZero();
+      assertThat(packagecloud.requests("GET")).isEqualTo(listings);
+      assertThat(packagecloud.remaining()).hasSize(8);
+
+      // packages deleted in the meantime do not fail a second apply
+      applied = PackagecloudDeletePackageAction.run(inputs::get, null, null, new Metrics());
+      assertThat(applied.deleted()).isEqualTo(planned.deleted());
+      assertThat(applied.failed()).isZero();
+    }
+  }
+
+  @Test
+  void applyShouldRejectThePlanOfAnotherRepository(@TempDir Path directory) throws Exception {
+    Path planFile = directory.resolve("plan.json");
+    new DeletionPlan("rabbitmq-server", null).write(planFile);
+    try (FakePackagecloud packagecloud = new FakePackagecloud(4).start()) {
+      Map<String, String> inputs = inputs(packagecloud);
+      inputs.put("mode", "apply");
+      inputs.put("plan_file", planFile.toString());
+      assertThatThrownBy(
+              () -> PackagecloudDeletePackageAction.run(inputs::get, null, null, new Metrics()))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("rabbitmq-server");
+      assertThat(packagecloud.requests("DELETE")).isZero();
+
+      inputs.remove("plan_file");
+      assertThatThrownBy(
+              () -> PackagecloudDeletePackageAction.run(inputs::get, null, null, new Metrics()))
+          .hasMessageContaining("plan_file");
+    }
+  }
+
+  @Test
+  void readShouldRejectUnknownFormats(@TempDir Path directory) throws Exception {
+    Path planFile = directory.resolve("plan.json");
+    Files.writeString(planFile, "{\"format\": 2, \"repository\": \"erlang\", \"packages\": []}");
+    assertThatThrownBy(() -> DeletionPlan.read(planFile))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("format");
+  }
+
+  private static Map<String, String> inputs(FakePackagecloud packagecloud) {
+    Map<String, String> inputs = new HashMap<>();
+    inputs.put("username", FakePackagecloud.USERNAME);
+    inputs.put("repository", FakePackagecloud.REPOSITORY);
+    inputs.put("token", "abcde");
+    inputs.put("api_url", packagecloud.apiUrl());
+    inputs.put("max_requests_per_second", "1000");
+    return inputs;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Packagecloud API of a generated repository, with latency and failures, for load tests
+final class FakePackagecloud implements AutoCloseable {
+
+  static final String USERNAME = "rabbitmq";
+  static final String REPOSITORY = "erlang";
+  private static final String PATH = "/api/v1/repos/" + USERNAME + "/" + REPOSITORY + "/";
+
+  // newest first, like the Packagecloud listing
+  private final List<Domain.Package> packages;
+  private final Map<String, Domain.Package> packagesByDestroyUrl = new HashMap<>();
+  private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+  private final Map<Integer, LongAdder> responses = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+  private int perPage = 100;
+  private Duration latency = Duration.ZERO;
+  private Duration jitter = Duration.ZERO;
+  private double throttledRatio = 0;
+  private double errorRatio = 0;
+  private HttpServer server;
+  private ExecutorService executor;
+
+  FakePackagecloud(int packageCount) {
+    List<Domain.Package> generated = new ArrayList<>(SyntheticRepository.packages(packageCount));
+    generated.sort(Comparator.comparing(Domain.Package::created_at).reversed());
+    this.packages = generated;
+    generated.forEach(p -> packagesByDestroyUrl.put(p.destroy_url(), p));
+  }
+
+  FakePackagecloud perPage(int perPage) {
+    this.perPage = perPage;
+    return this;
+  }
+
+  // each response is delayed by the latency plus a random part of the jitter
+  FakePackagecloud latency(Duration latency, Duration jitter) {
+    this.latency = latency;
+    this.jitter = jitter;
+    return this;
+  }
+
+  // ratio of the requests answered with 429
+  FakePackagecloud throttledRatio(double throttledRatio) {
+    this.throttledRatio = throttledRatio;
+    return this;
+  }
+
+  // ratio of the requests answered with 503
+  FakePackagecloud errorRatio(double errorRatio) {
+    this.errorRatio = errorRatio;
+    return this;
+  }
+
+  FakePackagecloud start() throws IOException {
+    // no Nagle delay on small responses, it would add up to the latency
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    // the latency must not hold platform threads
+    this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    this.server.setExecutor(executor);
+    this.server.createContext(
+        "/",
+        exchange -> {
+          try (exchange) {
+            handle(exchange);
+          }
+        });
+    this.server.start();
+    return this;
+  }
+
+  // base URL of the API, for the api_url input
+  String apiUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + "/api/v1/repos";
+  }
+
+  int packageCount() {
+    return packages.size();
+  }
+
+  List<Domain.Package> remaining() {
+    return packages.stream().filter(p -> !deleted.contains(p.destroy_url())).toList();
+  }
+
+  // e.g. {200=120, 429=3, 503=2}
+  SortedMap<Integer, Long> responses() {
+    SortedMap<Integer, Long> result = new TreeMap<>();
+    responses.forEach((status, count) -> result.put(status, count.sum()));
+    return result;
+  }
+
+  // e.g. requests("GET") for the number of listing requests
+  long requests(String method) {
+    LongAdder count = requests.get(method);
+    return count == null ? 0 : count.sum();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.computeIfAbsent(exchange.getRequestMethod(), m -> new LongAdder()).increment();
+    try {
+      delay();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    double draw = ThreadLocalRandom.current().nextDouble();
+    if (draw < throttledRatio) {
+      exchange.getResponseHeaders().set("Retry-After", "0");
+      respond(exchange, 429, null);
+      return;
+    } else if (draw < throttledRatio + errorRatio) {
+      respond(exchange, 503, null);
+      return;
+    }
+    URI uri = exchange.getRequestURI();
+    String path = uri.getPath();
+    if ("GET".equals(exchange.getRequestMethod()) && path.equals(PATH + "packages.json")) {
+      list(exchange, uri);
+    } else if ("DELETE".equals(exchange.getRequestMethod())
+        && packagesByDestroyUrl.containsKey(path)) {
+      respond(exchange, deleted.add(path) ? 200 : 404, "{}");
+    } else {
+      respond(exchange, 404, null);
+    }
+  }
+
+  private void list(HttpExchange exchange, URI uri) throws IOException {
+    int page = 1;
+    String query = uri.getRawQuery();
+    if (query != null) {
+      for (String parameter : query.split("&")) {
+        if (parameter.startsWith("page=")) {
+          page = Integer.parseInt(parameter.substring("page=".length()));
+        }
+      }
+    }
+    List<Domain.Package> remaining = remaining();
+    int lastPage = Math.max(1, (remaining.size() + perPage - 1) / perPage);
+    List<Domain.Package> pagePackages =
+        remaining.subList(
+            Math.min(remaining.size(), (page - 1) * perPage),
+            Math.min(remaining.size(), page * perPage));
+    String link = apiUrl() + "/" + USERNAME + "/" + REPOSITORY + "/packages.json?page=";
+    StringBuilder links = new StringBuilder();
+    if (page < lastPage) {
+      links.append('<').append(link).append(page + 1).append(">; rel=\"next\", ");
+    }
+    links.append('<').append(link).append(lastPage).append(">; rel=\"last\"");
+    exchange.getResponseHeaders().set("Link", links.toString());
+    exchange.getResponseHeaders().set("Total", String.valueOf(remaining.size()));
+    exchange.getResponseHeaders().set("Per-Page", String.valueOf(perPage));
+    respond(exchange, 200, Utils.GSON.toJson(pagePackages));
+  }
+
+  private void delay() throws InterruptedException {
+    long millis = latency.toMillis();
+    if (!jitter.isZero()) {
+      millis += ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1);
+    }
+    if (millis > 0) {
+      Thread.sleep(millis);
+    }
+  }
+
+  private void respond(HttpExchange exchange, int status, String body) throws IOException {
+    responses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+    if (bytes.length > 0) {
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (server != null) {
+      server.stop(0);
+      executor.close();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class GlobMatcherTest {
+
+  static final List<String> GLOBS =
+      List.of(
+          "*",
+          "**",
+          "",
+          "*.rpm",
+          "*.rpm,*.deb",
+          "erlang-*el8*.rpm",
+          "erlang-*20.*el7*.rpm",
+          "erlang-26.2.5-1.el8.x86_64.rpm",
+          "erlang-2?.*.rpm",
+          "*el8*el8*",
+          "*.el[78].*.rpm",
+          "erlang-{26}*",
+          "erlang-*.rpm, esl-erlang*.deb",
+          "*aa*a",
+          "a*a");
+
+  static final List<String> NAMES =
+      List.of(
+          "erlang-26.2.5-1.el8.x86_64.rpm",
+          "erlang-26.2.5-1.el8.aarch64.rpm",
+          "erlang-20.3.8.25-1.el7.x86_64.rpm",
+          "erlang-21.3.8.25-1.el7.x86_64.rpm",
+          "erlang_26.2.5-1_amd64.deb",
+          "esl-erlang_26.2.5-1_amd64.deb",
+          "erlang-27.0-1.el9.x86_64.rpm",
+          "rabbitmq-server-3.13.0-1.el8.noarch.rpm",
+          "el8el8",
+          "el8",
+          "aaa",
+          "aa",
+          "a",
+          "",
+          "el8/erlang-26.2.5-1.el8.x86_64.rpm");
+
+  @Test
+  void matchesShouldBehaveLikeJdkPathMatcher() {
+    for (String globs : GLOBS) {
+      GlobMatcher matcher = GlobMatcher.compile(globs);
+      for (String name : NAMES) {
+        assertThat(matcher.matches(name))
+            .as("%s matching %s", globs, name)
+            .isEqualTo(jdkMatches(globs, name));
+      }
+    }
+  }
+
+  @Test
+  void nullOrBlankGlobsShouldMatchEverything() {
+    assertThat(GlobMatcher.compile(null).matches("erlang-26.2.5-1.el8.x86_64.rpm")).isTrue();
+    assertThat(GlobMatcher.compile(" ").matches("erlang-26.2.5-1.el8.x86_64.rpm")).isTrue();
+  }
+
+  static boolean jdkMatches(String globs, String name) {
+    globs = globs == null || globs.isBlank() ? "*" : globs;
+    Path fileName = Path.of(name).getFileName();
+    return Arrays.stream(globs.split(","))
+        .map(String::trim)
+        .map(g -> FileSystems.getDefault().getPathMatcher("glob:" + g))
+        .anyMatch((PathMatcher m) -> m.matches(fileName));
+  }
+}
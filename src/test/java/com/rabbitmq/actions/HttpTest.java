@@ -6,6 +6,9 @@
 package com.rabbitmq.actions;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.delete;
+import static com.github.tomakehurst.wiremock.client.WireMock.deleteRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
@@ -14,16 +17,31 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
 import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static com.rabbitmq.actions.PackagecloudLogic.DeletionStatus.ALREADY_DELETED;
+import static com.rabbitmq.actions.PackagecloudLogic.DeletionStatus.DELETED;
+import static com.rabbitmq.actions.PackagecloudLogic.DeletionStatus.FAILED;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
 import com.rabbitmq.actions.PackagecloudLogic.PackagecloudPackageAccess;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class HttpTest {
 
@@ -67,6 +85,437 @@ public class HttpTest {
     assertThat(packages).hasSize(3);
   }
 
+  @Test
+  void paginationWithLastLinkShouldFetchPagesInParallelAndKeepOrder() {
+    IntFunction<String> pageLink =
+        page -> baseUrl() + "/rabbitmq/erlang/packages.json?filter=deb&page=" + page;
+    stubFor(
+        get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb"))
+            .willReturn(
+                aResponse()
+                    .withBody(page(1))
+                    .withHeader(
+                        "Link",
+                        "<"
+                            + pageLink.apply(2)
+                            + ">; rel=\"next\", <"
+                            + pageLink.apply(5)
+                            + ">; rel=\"last\"")));
+    for (int i = 2; i <= 5; i++) {
+      stubFor(
+          get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb&page=" + i))
+              // later pages answer faster, the order must not depend on it
+              .willReturn(aResponse().withBody(page(i)).withFixedDelay((6 - i) * 50)));
+    }
+    List<Domain.Package> packages = access().listConcurrency(4).list();
+    assertThat(packages)
+        .extracting(Domain.Package::filename)
+        .containsExactly(
+            "package-1.deb", "package-2.deb", "package-3.deb", "package-4.deb", "package-5.deb");
+    verify(exactly(5), getRequestedFor(urlPathMatching("/rabbitmq/erlang/packages.json")));
+  }
+
+  @Test
+  void paginationWithTotalHeadersShouldFetchAllPages() {
+    stubFor(
+        get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb"))
+            .willReturn(
+                aResponse()
+                    .withBody(page(1))
+                    .withHeader("Total", "3")
+                    .withHeader("Per-Page", "1")
+                    .withHeader(
+                        "Link",
+                        "<"
+                            + baseUrl()
+                            + "/rabbitmq/erlang/packages.json?filter=deb&page=2>; rel=\"next\"")));
+    stubFor(
+        get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb&page=2"))
+            .willReturn(aResponse().withBody(page(2))));
+    stubFor(
+        get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb&page=3"))
+            .willReturn(aResponse().withBody(page(3))));
+    List<Domain.Package> packages = access().list();
+    assertThat(packages)
+        .extracting(Domain.Package::filename)
+        .containsExactly("package-1.deb", "package-2.deb", "package-3.deb");
+  }
+
+  @Test
+  void listShouldOnlyReturnMatchingPackages() {
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .willReturn(
+                aResponse()
+                    .withBody(
+                        "[{\"filename\": \"erlang-25.0-1.el8.x86_64.rpm\", \"version\": \"25.0\"},"
+                            + "{\"filename\": \"erlang-25.0-1.el9.x86_64.rpm\", \"version\": \"25.0\"},"
+                            + "{\"filename\": \"erlang-26.0-1.el8.x86_64.rpm\", \"version\": \"26.0\"}]")));
+    List<Domain.Package> packages =
+        new PackagecloudPackageAccess(
+                baseUrl(), "rabbitmq", "erlang", "abcde", "rpm", "*.el8*.rpm", "^25\\.")
+            .list();
+    assertThat(packages)
+        .extracting(Domain.Package::filename)
+        .containsExactly("erlang-25.0-1.el8.x86_64.rpm");
+  }
+
+  @Test
+  void listAndDeleteShouldRecordMetrics() {
+    String body =
+        "[{\"filename\": \"erlang-25.0-1.el8.x86_64.rpm\", \"version\": \"25.0\"},"
+            + "{\"filename\": \"erlang-26.0-1.el8.x86_64.rpm\", \"version\": \"26.0\"}]";
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*")).willReturn(aResponse().withBody(body)));
+    stubFor(
+        delete(urlPathMatching("/api/.*"))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(50)));
+    Metrics metrics = new Metrics();
+    PackagecloudPackageAccess access =
+        new PackagecloudPackageAccess(
+                baseUrl(), "rabbitmq", "erlang", "abcde", "rpm", null, "^25\\.")
+            .metrics(metrics);
+    access.list();
+    access.delete(packageToDelete());
+    Map<String, Long> snapshot = metrics.snapshot();
+    assertThat(snapshot)
+        .containsEntry("bytes_received", (long) body.length())
+        .containsEntry("pages", 1L)
+        .containsEntry("packages_listed", 2L)
+        .containsEntry("packages_matched", 1L)
+        .containsEntry("list_request_count", 1L)
+        .containsEntry("page_decoding_count", 1L)
+        .containsEntry("delete_request_count", 1L);
+    assertThat(snapshot.get("delete_request_p99_ms")).isGreaterThanOrEqualTo(50L);
+  }
+
+  @Test
+  void deleteShouldWaitAndRetryWhenRateLimited() {
+    stubFor(
+        delete(urlEqualTo("/api/v1/repos/rabbitmq/erlang/el/8/some-package.rpm"))
+            .inScenario("rate-limit")
+            .whenScenarioStateIs(STARTED)
+            .willReturn(aResponse().withStatus(429).withHeader("Retry-After", "1"))
+            .willSetStateTo("allowed"));
+    stubFor(
+        delete(urlEqualTo("/api/v1/repos/rabbitmq/erlang/el/8/some-package.rpm"))
+            .inScenario("rate-limit")
+            .whenScenarioStateIs("allowed")
+            .willReturn(aResponse().withStatus(200)));
+    long start = System.nanoTime();
+    access().delete(packageToDelete());
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+        .isGreaterThanOrEqualTo(Duration.ofMillis(900));
+    verify(
+        exactly(2),
+        deleteRequestedFor(urlEqualTo("/api/v1/repos/rabbitmq/erlang/el/8/some-package.rpm")));
+  }
+
+  @Test
+  void listShouldRetryPageOnServerError() {
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .inScenario("server-error")
+            .whenScenarioStateIs(STARTED)
+            .willReturn(aResponse().withStatus(503))
+            .willSetStateTo("recovered"));
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .inScenario("server-error")
+            .whenScenarioStateIs("recovered")
+            .willReturn(aResponse().withBody(page(1))));
+    assertThat(access().list()).hasSize(1);
+    verify(exactly(2), getRequestedFor(urlPathMatching("/rabbitmq/erlang/packages.*")));
+  }
+
+  @Test
+  void deleteShouldConsiderNotFoundAsDeleted() {
+    stubFor(delete(urlPathMatching("/api/.*")).willReturn(aResponse().withStatus(404)));
+    access().delete(packageToDelete());
+    verify(exactly(1), deleteRequestedFor(urlPathMatching("/api/.*")));
+  }
+
+  @Test
+  void deleteAllShouldReturnResultPerPackage() {
+    stubFor(
+        delete(urlPathMatching("/api/v1/repos/rabbitmq/erlang/el/8/.*"))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(100)));
+    stubFor(
+        delete(urlEqualTo("/api/v1/repos/rabbitmq/erlang/el/8/package-3.rpm"))
+            .willReturn(aResponse().withStatus(404)));
+    stubFor(
+        delete(urlEqualTo("/api/v1/repos/rabbitmq/erlang/el/8/package-5.rpm"))
+            .willReturn(aResponse().withStatus(403)));
+    List<Domain.Package> packages =
+        IntStream.range(0, 20).mapToObj(i -> packageToDelete("package-" + i + ".rpm")).toList();
+    PackagecloudPackageAccess access =
+        access().deleteConcurrency(10).requestScheduler(new RequestScheduler(1000));
+    long start = System.nanoTime();
+    List<PackagecloudLogic.DeletionResult> results = access.deleteAll(packages);
+    Duration duration = Duration.ofNanos(System.nanoTime() - start);
+    assertThat(results).extracting(PackagecloudLogic.DeletionResult::p).isEqualTo(packages);
+    assertThat(results)
+        .extracting(PackagecloudLogic.DeletionResult::status)
+        .containsOnly(DELETED, ALREADY_DELETED, FAILED)
+        .filteredOn(status -> status == DELETED)
+        .hasSize(18);
+    assertThat(results.get(3).status()).isEqualTo(ALREADY_DELETED);
+    assertThat(results.get(5).status()).isEqualTo(FAILED);
+    assertThat(results.get(5).error()).contains("403");
+    assertThat(results).allMatch(r -> r.attempts() == 1);
+    assertThat(results.get(0).latency()).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+    // 20 deletions of 100 ms each, 10 at a time
+    assertThat(duration).isLessThan(Duration.ofMillis(20 * 100));
+  }
+
+  @Test
+  void asyncListShouldFollowPagination() throws Exception {
+    IntFunction<String> pageLink =
+        page -> baseUrl() + "/rabbitmq/erlang/packages.json?filter=deb&page=" + page;
+    stubFor(
+        get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb"))
+            .willReturn(
+                aResponse()
+                    .withBody(page(1))
+                    .withHeader(
+                        "Link",
+                        "<"
+                            + pageLink.apply(2)
+                            + ">; rel=\"next\", <"
+                            + pageLink.apply(4)
+                            + ">; rel=\"last\"")));
+    for (int i = 2; i <= 4; i++) {
+      stubFor(
+          get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb&page=" + i))
+              .willReturn(aResponse().withBody(page(i)).withFixedDelay((5 - i) * 50)));
+    }
+    try (PackagecloudLogic.AsyncPackageAccess access = access().async(2)) {
+      List<Domain.Package> packages = access.list().get(10, TimeUnit.SECONDS);
+      assertThat(packages)
+          .extracting(Domain.Package::filename)
+          .containsExactly("package-1.deb", "package-2.deb", "package-3.deb", "package-4.deb");
+    }
+  }
+
+  @Test
+  void asyncListShouldRetryPageWhenBodyIsCut() throws Exception {
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .inScenario("cut-body")
+            .whenScenarioStateIs(STARTED)
+            .willReturn(aResponse().withFault(Fault.MALFORMED_RESPONSE_CHUNK))
+            .willSetStateTo("recovered"));
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .inScenario("cut-body")
+            .whenScenarioStateIs("recovered")
+            .willReturn(aResponse().withBody(page(1))));
+    try (PackagecloudLogic.AsyncPackageAccess access = access().async(2)) {
+      assertThat(access.list().get(10, TimeUnit.SECONDS))
+          .extracting(Domain.Package::filename)
+          .containsExactly("package-1.deb");
+    }
+    verify(exactly(2), getRequestedFor(urlPathMatching("/rabbitmq/erlang/packages.*")));
+  }
+
+  @Test
+  void asyncDeleteAllShouldBoundInFlightRequests() throws Exception {
+    stubFor(
+        delete(urlPathMatching("/api/v1/repos/rabbitmq/erlang/el/8/.*"))
+            .willReturn(aResponse().withStatus(200).withFixedDelay(100)));
+    stubFor(
+        delete(urlEqualTo("/api/v1/repos/rabbitmq/erlang/el/8/package-2.rpm"))
+            .willReturn(aResponse().withStatus(404)));
+    List<Domain.Package> packages =
+        IntStream.range(0, 10).mapToObj(i -> packageToDelete("package-" + i + ".rpm")).toList();
+    long start = System.nanoTime();
+    List<PackagecloudLogic.DeletionResult> results;
+    try (PackagecloudLogic.AsyncPackageAccess access =
+        access().requestScheduler(new RequestScheduler(1000)).async(5)) {
+      results = access.deleteAll(packages).get(10, TimeUnit.SECONDS);
+    }
+    Duration duration = Duration.ofNanos(System.nanoTime() - start);
+    assertThat(results).extracting(PackagecloudLogic.DeletionResult::p).isEqualTo(packages);
+    assertThat(results.get(2).status()).isEqualTo(ALREADY_DELETED);
+    assertThat(results).filteredOn(r -> r.status() == DELETED).hasSize(9);
+    // 9 slow deletions, 5 at a time, so at least 2 rounds
+    assertThat(duration).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+  }
+
+  @Test
+  void listShouldRevalidateCachedPages(@TempDir Path cacheDirectory) {
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .willReturn(aResponse().withBody(page(1)).withHeader("ETag", "\"v1\"")));
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .withHeader("If-None-Match", equalTo("\"v1\""))
+            .willReturn(aResponse().withStatus(304)));
+    ListingCache cache = new ListingCache(cacheDirectory);
+    assertThat(access().listingCache(cache).list())
+        .extracting(Domain.Package::filename)
+        .containsExactly("package-1.deb");
+    assertThat(access().listingCache(cache).list())
+        .extracting(Domain.Package::filename)
+        .containsExactly("package-1.deb");
+    verify(
+        exactly(1),
+        getRequestedFor(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .withHeader("If-None-Match", equalTo("\"v1\"")));
+  }
+
+  @Test
+  void asyncListShouldRevalidateCachedPages(@TempDir Path cacheDirectory) throws Exception {
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .willReturn(aResponse().withBody(page(1)).withHeader("ETag", "\"v1\"")));
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .withHeader("If-None-Match", equalTo("\"v1\""))
+            .willReturn(aResponse().withStatus(304)));
+    ListingCache cache = new ListingCache(cacheDirectory);
+    for (int i = 0; i < 2; i++) {
+      try (PackagecloudLogic.AsyncPackageAccess access = access().listingCache(cache).async(2)) {
+        assertThat(access.list().get(10, TimeUnit.SECONDS))
+            .extracting(Domain.Package::filename)
+            .containsExactly("package-1.deb");
+      }
+    }
+    verify(
+        exactly(1),
+        getRequestedFor(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .withHeader("If-None-Match", equalTo("\"v1\"")));
+  }
+
+  @Test
+  void cachedPageShouldNotBeRevalidatedWhenItsBodyDoesNotMatchItsMetadata(
+      @TempDir Path cacheDirectory) throws Exception {
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .willReturn(aResponse().withBody(page(1)).withHeader("ETag", "\"v1\"")));
+    stubFor(
+        get(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .withHeader("If-None-Match", equalTo("\"v1\""))
+            .willReturn(aResponse().withStatus(304)));
+    ListingCache cache = new ListingCache(cacheDirectory);
+    access().listingCache(cache).list();
+    // the process died between the body and the metadata of another response
+    try (Stream<Path> files = Files.list(cacheDirectory)) {
+      for (Path body : files.filter(f -> !f.toString().endsWith(".meta.json")).toList()) {
+        Files.writeString(body, "[]");
+      }
+    }
+    assertThat(access().listingCache(cache).list())
+        .extracting(Domain.Package::filename)
+        .containsExactly("package-1.deb");
+    verify(
+        exactly(0),
+        getRequestedFor(urlPathMatching("/rabbitmq/erlang/packages.*"))
+            .withHeader("If-None-Match", equalTo("\"v1\"")));
+  }
+
+  @Test
+  void incrementalListingShouldStopAtWatermark(@TempDir Path directory) {
+    Path stateFile = directory.resolve("state.json");
+    String nextLink =
+        "<" + baseUrl() + "/rabbitmq/erlang/packages.json?filter=deb&page=2>; rel=\"next\"";
+    stubFor(
+        get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb"))
+            .willReturn(
+                aResponse()
+                    .withBody("[" + dated("b", "2024-01-02") + "]")
+                    .withHeader("Link", nextLink)));
+    stubFor(
+        get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb&page=2"))
+            .willReturn(aResponse().withBody("[" + dated("a", "2024-01-01") + "]")));
+
+    IncrementalListing listing =
+        new IncrementalListing(access(), stateFile, "deb", Duration.ofDays(7));
+    assertThat(listing.list()).extracting(Domain.Package::filename).containsExactly("b", "a");
+    assertThat(stateFile).exists();
+
+    stubFor(
+        get(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb"))
+            .willReturn(
+                aResponse()
+                    .withBody(
+                        "["
+                            + String.join(
+                                ",",
+                                dated("c", "2024-01-03"),
+                                dated("b", "2024-01-02"),
+                                dated("a", "2024-01-01"))
+                            + "]")
+                    .withHeader("Link", nextLink)));
+    listing = new IncrementalListing(access(), stateFile, "deb", Duration.ofDays(7));
+    assertThat(listing.list()).extracting(Domain.Package::filename).containsExactly("b", "a", "c");
+    // the second page is older than the watermark, it is not requested again
+    verify(
+        exactly(1),
+        getRequestedFor(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb&page=2")));
+
+    listing.forget(List.of(Utils.GSON.fromJson(dated("a", "2024-01-01"), Domain.Package.class)));
+    assertThat(IncrementalListing.load(stateFile).packages)
+        .extracting(Domain.Package::filename)
+        .containsExactly("b", "c");
+
+    // different filters, full scan
+    listing = new IncrementalListing(access(), stateFile, "rpm", Duration.ofDays(7));
+    listing.list();
+    verify(
+        exactly(2),
+        getRequestedFor(urlEqualTo("/rabbitmq/erlang/packages.json?filter=deb&page=2")));
+  }
+
+  static String dated(String filename, String date) {
+    return String.format(
+        "{\"filename\": \"%s\", \"package_url\": \"/%s\", \"created_at\": \"%sT10:00:00.000Z\"}",
+        filename, filename, date);
+  }
+
+  @Test
+  void inFlightLimiterShouldStartPendingOperationsOnCompletion() {
+    PackagecloudLogic.InFlightLimiter limiter = new PackagecloudLogic.InFlightLimiter(2);
+    List<CompletableFuture<Integer>> operations =
+        IntStream.range(0, 5).mapToObj(i -> new CompletableFuture<Integer>()).toList();
+    List<CompletableFuture<Integer>> results =
+        operations.stream().map(o -> limiter.submit(() -> o)).toList();
+    assertThat(limiter.inFlight()).isEqualTo(2);
+    for (int i = 0; i < operations.size(); i++) {
+      operations.get(i).complete(i);
+      assertThat(results.get(i).join()).isEqualTo(i);
+    }
+    waitAtMost(() -> limiter.inFlight() == 0);
+  }
+
+  static void waitAtMost(BooleanSupplier condition) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("Condition not met in time");
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  static Domain.Package packageToDelete() {
+    return packageToDelete("some-package.rpm");
+  }
+
+  static Domain.Package packageToDelete(String filename) {
+    return Utils.GSON.fromJson(
+        "{\"filename\": \""
+            + filename
+            + "\", \"destroy_url\": \"/api/v1/repos/rabbitmq/erlang/el/8/"
+            + filename
+            + "\"}",
+        Domain.Package.class);
+  }
+
+  static String page(int page) {
+    return "[{\"filename\": \"package-" + page + ".deb\"}]";
+  }
+
   PackagecloudPackageAccess access() {
     String username = "rabbitmq";
     String repository = "erlang";
@@ -6,9 +6,17 @@
 package com.rabbitmq.actions;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 public class JsonTest {
@@ -46,8 +54,44 @@ public class JsonTest {
     assertThat(p.destroy_url())
         .isEqualTo("/api/v1/repos/rabbitmq/erlang/el/7/erlang-20.3.8.25-1.el7.x86_64.rpm");
     assertThat(p.version()).isEqualTo("20.3.8.25");
+    assertThat(p.distro_version()).isEqualTo("el/7");
     assertThat(p.created_at())
         .isEqualTo(
             ZonedDateTime.parse("2020-01-24T05:35:34.000Z", DateTimeFormatter.ISO_ZONED_DATE_TIME));
   }
+
+  @Test
+  void jsonPackagesShouldBeDecodedOneByOne() throws Exception {
+    String json = "[" + JSON + "," + JSON.replace("20.3.8.25", "20.3.8.26") + "]";
+    List<Domain.Package> packages = new ArrayList<>();
+    Utils.decodePackages(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), packages::add);
+    assertThat(packages)
+        .extracting(Domain.Package::version)
+        .containsExactly("20.3.8.25", "20.3.8.26");
+    assertThat(packages.get(1).filename()).isEqualTo("erlang-20.3.8.26-1.el7.x86_64.rpm");
+
+    packages.clear();
+    Utils.decodePackages(
+        new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)), packages::add);
+    assertThat(packages).isEmpty();
+  }
+
+  @Test
+  void streamErrorsShouldNotBeWrappedWhenDecoding() {
+    byte[] truncated =
+        ("[" + JSON.substring(0, JSON.length() / 2)).getBytes(StandardCharsets.UTF_8);
+    InputStream reset =
+        new SequenceInputStream(
+            new ByteArrayInputStream(truncated),
+            new InputStream() {
+              @Override
+              public int read() throws IOException {
+                throw new IOException("Connection reset");
+              }
+            });
+    assertThatThrownBy(() -> Utils.decodePackages(reset, p -> {}))
+        .isInstanceOf(IOException.class)
+        .hasMessage("Connection reset");
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+// the whole flow against a fake Packagecloud, e.g. to tune the concurrency and the retries,
+// excluded from the default build, the report is written to target/load-test.txt:
+// ./mvnw test -Pload -Dload.packages=100000 -Dload.latency=50 -Dload.delete_concurrency=16
+@Tag("load")
+public class LoadTest {
+
+  @Test
+  void deleteShouldCompleteWithLatencyThrottlingAndErrors() throws Exception {
+    int packageCount = Integer.getInteger("load.packages", 1000);
+    int keepLastN = Integer.getInteger("load.keep_last_n", 10);
+    Duration latency = Duration.ofMillis(Long.getLong("load.latency", 5));
+    Duration jitter = Duration.ofMillis(Long.getLong("load.jitter", 5));
+    double throttledRatio = Double.parseDouble(System.getProperty("load.throttled", "0.01"));
+    double errorRatio = Double.parseDouble(System.getProperty("load.errors", "0.01"));
+
+    try (FakePackagecloud packagecloud =
+        new FakePackagecloud(packageCount)
+            .perPage(Integer.getInteger("load.per_page", 100))
+            .latency(latency, jitter)
+            .throttledRatio(throttledRatio)
+            .errorRatio(errorRatio)
+            .start()) {
+      Map<String, String> inputs = new HashMap<>();
+      inputs.put("username", FakePackagecloud.USERNAME);
+      inputs.put("repository", FakePackagecloud.REPOSITORY);
+      inputs.put("token", "abcde");
+      inputs.put("api_url", packagecloud.apiUrl());
+      inputs.put("keep_last_n", String.valueOf(keepLastN));
+      inputs.put("do_delete", "true");
+      inputs.put(
+          "max_requests_per_second", System.getProperty("load.max_requests_per_second", "1000"));
+      inputs.put("list_concurrency", System.getProperty("load.list_concurrency", "4"));
+      inputs.put("delete_concurrency", System.getProperty("load.delete_concurrency", "8"));
+
+      Metrics metrics = new Metrics();
+      long start = System.nanoTime();
+      RepositoryBatch.Summary summary =
+          PackagecloudDeletePackageAction.run(inputs::get, null, null, metrics);
+      long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      Map<String, Long> snapshot = metrics.snapshot();
+      Path report = Path.of(System.getProperty("load.report", "target/load-test.txt"));
+      Files.write(
+          report,
+          List.of(
+              String.format(
+                  "Load test: %d packages, latency %d ms + %d ms jitter, %.1f%% 429, %.1f%% 503",
+                  packageCount,
+                  latency.toMillis(),
+                  jitter.toMillis(),
+                  throttledRatio * 100,
+                  errorRatio * 100),
+              String.format(
+                  "    end to end: %d ms, %.0f packages/s",
+                  durationMs, packageCount * 1000.0 / Math.max(1, durationMs)),
+              String.format(
+                  "    listing: %d ms, %d request(s), %s",
+                  snapshot.get("phase_list_ms"),
+                  snapshot.get("list_request_count"),
+                  percentiles(snapshot, "list_request")),
+              String.format(
+                  "    deletion: %d package(s) in %d ms, %.0f deletions/s, %s",
+                  summary.deleted(),
+                  snapshot.get("phase_delete_ms"),
+                  summary.deleted() * 1000.0 / Math.max(1, snapshot.get("phase_delete_ms")),
+                  percentiles(snapshot, "delete_request")),
+              String.format("    responses: %s", packagecloud.responses())));
+      // all the metrics, like the metrics_file input of the action
+      metrics.writeJson(report.resolveSibling("load-test-metrics.json"));
+
+      assertThat(summary.failed()).isZero();
+      assertThat(packagecloud.remaining()).hasSize(packageCount - summary.deleted());
+      // the packages of the last versions are kept
+      assertThat(packagecloud.remaining().stream().map(Domain.Package::version).distinct())
+          .hasSize(keepLastN);
+    }
+  }
+
+  private static String percentiles(Map<String, Long> snapshot, String histogram) {
+    return String.format(
+        "p50 %d ms, p95 %d ms, p99 %d ms",
+        snapshot.getOrDefault(histogram + "_p50_ms", 0L),
+        snapshot.getOrDefault(histogram + "_p95_ms", 0L),
+        snapshot.getOrDefault(histogram + "_p99_ms", 0L));
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MetricsTest {
+
+  @Test
+  void histogramPercentileShouldUseNearestRank() {
+    Metrics.Histogram histogram = new Metrics.Histogram();
+    IntStream.rangeClosed(1, 100).forEach(histogram::record);
+    Metrics.Histogram.Snapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.count()).isEqualTo(100);
+    // the values below 128 have their own bucket
+    assertThat(snapshot.percentile(50)).isEqualTo(50);
+    assertThat(snapshot.percentile(95)).isEqualTo(95);
+    assertThat(snapshot.percentile(99)).isEqualTo(99);
+    assertThat(snapshot.max()).isEqualTo(100);
+
+    histogram = new Metrics.Histogram();
+    histogram.record(7);
+    assertThat(histogram.snapshot().percentile(99)).isEqualTo(7);
+  }
+
+  @Test
+  void histogramShouldBeBoundedAndPrecise() {
+    Metrics.Histogram histogram = new Metrics.Histogram();
+    long[] values = ThreadLocalRandom.current().longs(1_000_000, 0, 10_000_000_000L).toArray();
+    Arrays.stream(values).parallel().forEach(histogram::record);
+    Arrays.sort(values);
+    Metrics.Histogram.Snapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.count()).isEqualTo(values.length);
+    assertThat(snapshot.counts().length).isLessThan(5_000);
+    for (double percentile : new double[] {50, 95, 99}) {
+      long actual = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+      assertThat(snapshot.percentile(percentile))
+          .isGreaterThanOrEqualTo(actual)
+          .isLessThanOrEqualTo(actual + actual / 100);
+    }
+    assertThat(snapshot.max()).isEqualTo(values[values.length - 1]);
+
+    // larger than the last bucket, the maximum is still exact
+    histogram.record(Long.MAX_VALUE);
+    assertThat(histogram.snapshot().percentile(100)).isEqualTo(Long.MAX_VALUE);
+    for (long value = 1; value > 0 && value <= Metrics.Histogram.MAX_VALUE; value = value * 3 + 1) {
+      int index = Metrics.Histogram.index(value);
+      assertThat(Metrics.Histogram.upperBound(index)).isGreaterThanOrEqualTo(value);
+      assertThat(index == 0 || Metrics.Histogram.upperBound(index - 1) < value).isTrue();
+    }
+  }
+
+  @Test
+  void snapshotShouldContainPhasesCountersAndHistograms() {
+    Metrics metrics = new Metrics();
+    metrics.phase("list", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20));
+    metrics.phase("list", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(30));
+    assertThat(metrics.time("plan", () -> "result")).isEqualTo("result");
+    metrics.count("packages", 3);
+    metrics.count("packages", 2);
+    Metrics.Histogram latencies = metrics.histogram("delete_request");
+    IntStream.rangeClosed(1, 100)
+        .parallel()
+        .forEach(i -> latencies.record(TimeUnit.MILLISECONDS.toNanos(i)));
+    metrics.histogram("list_request");
+
+    Map<String, Long> snapshot = metrics.snapshot();
+    assertThat(snapshot.get("phase_list_ms")).isGreaterThanOrEqualTo(50);
+    assertThat(snapshot).containsKey("phase_plan_ms");
+    assertThat(snapshot)
+        .containsEntry("packages", 5L)
+        .containsEntry("delete_request_count", 100L)
+        .containsEntry("delete_request_p50_ms", 50L)
+        .containsEntry("delete_request_p95_ms", 95L)
+        .containsEntry("delete_request_p99_ms", 99L)
+        .containsEntry("delete_request_max_ms", 100L)
+        // no percentiles without values
+        .containsEntry("list_request_count", 0L)
+        .doesNotContainKey("list_request_p50_ms");
+    assertThat(metrics.counter("packages")).isEqualTo(5);
+    assertThat(metrics.counter("unknown")).isZero();
+  }
+
+  @Test
+  void metricsShouldBeWrittenAsGitHubOutputsAndJson(@TempDir Path directory) throws Exception {
+    Metrics metrics = new Metrics();
+    metrics.count("packages", 42);
+    metrics.count("versions", 7);
+    Path githubOutput = directory.resolve("output");
+    Files.writeString(githubOutput, "previous=value\n");
+    metrics.writeGitHubOutput(githubOutput);
+    assertThat(Files.readAllLines(githubOutput))
+        .containsExactly(
+            "previous=value",
+            "packages=42",
+            "versions=7",
+            "metrics={\"packages\":42,\"versions\":7}");
+
+    Path json = directory.resolve("metrics.json");
+    metrics.writeJson(json);
+    assertThat(Files.readString(json)).isEqualTo("{\"packages\":42,\"versions\":7}");
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class NumericVersionTest {
+
+  static final List<String> VERSIONS =
+      List.of(
+          "26.2.5.3-1",
+          "26.2.5.3",
+          "26.2.5.3-0",
+          "26.2.5.3-2",
+          "26.2.5.10-1",
+          "26.2.5-1",
+          "26.2.5.0-1",
+          "26.2-1",
+          "26.2.0",
+          "26.2",
+          "26",
+          "26.0.0-0",
+          "25.3.2.12-1",
+          "3.13.0",
+          "3.13.0-1",
+          "3.13.0-rc.1",
+          "3.13.0-beta.2",
+          "3.13.0.1",
+          "1-0.1",
+          "1-1",
+          "1.0-1",
+          "1-1-1",
+          "1-1-0",
+          "1-0-1",
+          "1-0-0",
+          "0-1",
+          "0",
+          "007.01",
+          "123456789.1",
+          "1234567890.1",
+          "1..2",
+          "1-",
+          "1:22.3.4.3-1",
+          "22.3.4.3-1.el8",
+          "2.8.1~rc1");
+
+  @Test
+  void numericVersionsShouldBePacked() {
+    assertThat(NumericVersion.pack("26.2.5.3-1")).containsExactly(26, 2, 5, 3, -1, 1);
+    assertThat(NumericVersion.pack("26.2.0")).containsExactly(26, 2);
+    assertThat(NumericVersion.pack("1.0-1")).containsExactly(1, -1, 1);
+    assertThat(NumericVersion.pack("1.0-0")).containsExactly(1);
+    assertThat(NumericVersion.pack("3.13.0-rc.1")).isNull();
+    assertThat(NumericVersion.pack("1234567890.1")).isNull();
+    assertThat(NumericVersion.pack("1..2")).isNull();
+  }
+
+  @Test
+  void comparisonShouldMatchComparableVersion() {
+    for (String left : VERSIONS) {
+      for (String right : VERSIONS) {
+        assertSameOrder(left, right);
+      }
+    }
+  }
+
+  @Test
+  void comparisonShouldMatchComparableVersionOnRandomVersions() {
+    Random random = new Random(42);
+    List<String> versions = new ArrayList<>();
+    for (int i = 0; i < 2_000; i++) {
+      StringBuilder version = new StringBuilder();
+      int components = 1 + random.nextInt(6);
+      for (int j = 0; j < components; j++) {
+        if (j > 0) {
+          version.append(random.nextInt(4) == 0 ? '-' : '.');
+        }
+        version.append(random.nextInt(3) == 0 ? 0 : random.nextInt(12));
+      }
+      versions.add(version.toString());
+    }
+    for (int i = 0; i < versions.size() - 1; i++) {
+      assertSameOrder(versions.get(i), versions.get(i + 1));
+      assertSameOrder(versions.get(i), versions.get(random.nextInt(versions.size())));
+    }
+  }
+
+  static void assertSameOrder(String left, String right) {
+    VersionKeys keys = new VersionKeys();
+    int expected =
+        Integer.signum(
+            new ComparableVersion(VersionKeys.curate(left))
+                .compareTo(new ComparableVersion(VersionKeys.curate(right))));
+    assertThat(Integer.signum(keys.get(left).compareTo(keys.get(right))))
+        .as("%s compared to %s", left, right)
+        .isEqualTo(expected);
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class PackageTableTest {
+
+  @Test
+  void tableShouldIndexPackagesByVersionMinorAndDistribution() {
+    List<Domain.Package> packages =
+        List.of(
+            p("erlang-26.2.5-1.el8.x86_64.rpm", "26.2.5", "el/8", "2024-05-01"),
+            p("erlang-26.2.5-1.el9.x86_64.rpm", "26.2.5", "el/9", "2024-05-03"),
+            p("erlang-26.2.4-1.el8.x86_64.rpm", "26.2.4", "el/8", "2024-04-01"),
+            p("erlang-26.1.2-1.el9.x86_64.rpm", "26.1.2", "el/9", "2024-02-01"),
+            p("erlang-26.2.5-1.el8.aarch64.rpm", "26.2.5", "el/8", "2024-05-02"));
+    PackageTable table = PackageTable.of(packages, new VersionKeys());
+
+    assertThat(table.size()).isEqualTo(5);
+    assertThat(table.versionCount()).isEqualTo(3);
+    assertThat(table.version(3)).isEqualTo("26.1.2");
+    assertThat(table.filename(4)).isEqualTo("erlang-26.2.5-1.el8.aarch64.rpm");
+    assertThat(table.get(2))
+        .isEqualTo(packages.get(2))
+        .extracting(Domain.Package::filename, Domain.Package::version, Domain.Package::package_url)
+        .containsExactly(
+            "erlang-26.2.4-1.el8.x86_64.rpm", "26.2.4", "/erlang-26.2.4-1.el8.x86_64.rpm");
+
+    VersionKeys versionKeys = new VersionKeys();
+    assertThat(table.latestMinor(null, versionKeys.comparator())).isEqualTo("26.2");
+    assertThat(table.latestMinor("el/9", versionKeys.comparator())).isEqualTo("26.2");
+    assertThat(table.latestMinor("el/7", versionKeys.comparator())).isNull();
+
+    assertThat(table.distributions()).containsExactly("el/8", "el/9");
+    assertThat(table.rowsOfDistribution("el/9")).containsExactly(1, 3);
+
+    assertThat(table.packageVersions())
+        .extracting(pv -> pv.version, pv -> pv.lastPackageDate)
+        .containsExactly(
+            tuple("26.2.5", date("2024-05-03")),
+            tuple("26.2.4", date("2024-04-01")),
+            tuple("26.1.2", date("2024-02-01")));
+  }
+
+  @Test
+  void packageVersionsOfDistributionShouldUseTheDatesOfTheDistribution() {
+    PackageTable table =
+        PackageTable.of(
+            List.of(
+                p("erlang-26.2.5-1.el8.x86_64.rpm", "26.2.5", "el/8", "2024-05-01"),
+                p("erlang-26.2.5-1.el9.x86_64.rpm", "26.2.5", "el/9", "2024-05-03"),
+                p("erlang-26.2.4-1.el9.x86_64.rpm", "26.2.4", "el/9", "2024-04-01"),
+                p("erlang-26.2.5-1.el8.aarch64.rpm", "26.2.5", "el/8", "2024-05-02")),
+            new VersionKeys());
+    assertThat(table.packageVersions("el/8"))
+        .extracting(pv -> pv.version, pv -> pv.lastPackageDate)
+        .containsExactly(tuple("26.2.5", date("2024-05-02")));
+    assertThat(table.packageVersions("el/9"))
+        .extracting(pv -> pv.version, pv -> pv.lastPackageDate)
+        .containsExactly(tuple("26.2.5", date("2024-05-03")), tuple("26.2.4", date("2024-04-01")));
+    assertThat(table.packageVersions("el/7")).isEmpty();
+  }
+
+  @Test
+  void lastDateOfAVersionShouldIgnorePackagesWithoutDate() {
+    Domain.Package withoutDate =
+        Utils.GSON.fromJson(
+            "{\"filename\":\"erlang-26.2.5-1.el9.x86_64.rpm\",\"version\":\"26.2.5\","
+                + "\"distro_version\":\"el/9\"}",
+            Domain.Package.class);
+    PackageTable table =
+        PackageTable.of(
+            List.of(
+                p("erlang-26.2.4-1.el8.x86_64.rpm", "26.2.4", "el/8", "2024-04-01"),
+                withoutDate,
+                p("erlang-26.2.5-1.el8.x86_64.rpm", "26.2.5", "el/8", "2024-05-01")),
+            new VersionKeys());
+    assertThat(table.packageVersions())
+        .extracting(pv -> pv.version, pv -> pv.lastPackageDate)
+        .containsExactly(tuple("26.2.4", date("2024-04-01")), tuple("26.2.5", date("2024-05-01")));
+    assertThat(table.packageVersions("el/9"))
+        .extracting(pv -> pv.version, pv -> pv.lastPackageDate)
+        .containsExactly(tuple("26.2.5", null));
+  }
+
+  @Test
+  void distributionShouldBeExtractedFromFilenameWhenMissing() {
+    assertThat(
+            PackageTable.distribution(
+                p("erlang-26.2.5-1.el8.x86_64.rpm", "26.2.5", "", "2024-05-01")))
+        .isEqualTo("el8");
+    assertThat(
+            PackageTable.distribution(
+                p("rabbitmq-server-3.13.0-1.suse.noarch.rpm", "3.13.0", "", "2024-05-01")))
+        .isEqualTo("suse");
+    assertThat(
+            PackageTable.distribution(p("erlang-26.2.5-1.x86_64.rpm", "26.2.5", "", "2024-05-01")))
+        .isEqualTo(PackageTable.UNKNOWN_DISTRIBUTION);
+    assertThat(
+            PackageTable.distribution(
+                p("erlang-base_26.2.5-1~jammy_amd64.deb", "26.2.5", "", "2024-05-01")))
+        .isEqualTo("jammy");
+    assertThat(
+            PackageTable.distribution(
+                p("erlang-base_26.2.5-1+deb12_amd64.deb", "26.2.5", "", "2024-05-01")))
+        .isEqualTo("deb12");
+    assertThat(
+            PackageTable.distribution(
+                p("erlang-base_26.2.5-1_amd64.deb", "26.2.5", "", "2024-05-01")))
+        .isEqualTo(PackageTable.UNKNOWN_DISTRIBUTION);
+    assertThat(
+            PackageTable.distribution(
+                p("erlang-base_26.2.5-1_amd64.deb", "26.2.5", "ubuntu/jammy", "2024-05-01")))
+        .isEqualTo("ubuntu/jammy");
+  }
+
+  @Test
+  void emptyTable() {
+    PackageTable table = PackageTable.of(List.of(), new VersionKeys());
+    assertThat(table.size()).isZero();
+    assertThat(table.versionCount()).isZero();
+    assertThat(table.packageVersions()).isEmpty();
+    assertThat(table.rowsOfDistribution("el/8")).isEmpty();
+    assertThat(table.latestMinor(null, new VersionKeys().comparator())).isNull();
+  }
+
+  static ZonedDateTime date(String date) {
+    return ZonedDateTime.parse(date + "T10:00:00Z");
+  }
+
+  static Domain.Package p(String filename, String version, String distribution, String date) {
+    return Utils.GSON.fromJson(
+        "{\"filename\":\""
+            + filename
+            + "\",\"version\":\""
+            + version
+            + "\",\"distro_version\":\""
+            + distribution
+            + "\",\"created_at\":\""
+            + date
+            + "T10:00:00.000Z\",\"package_url\":\"/"
+            + filename
+            + "\"}",
+        Domain.Package.class);
+  }
+}
@@ -9,17 +9,23 @@ package com.rabbitmq.actions;
 // import static com.rabbitmq.actions.PackagecloudDeletePackageAction.filterForDeletion;
 import static com.rabbitmq.actions.PackagecloudDeletePackageAction.*;
 import static com.rabbitmq.actions.PackagecloudLogic.PackagecloudPackageAccess.filter;
+import static com.rabbitmq.actions.ReferencePlanning.*;
 import static java.util.Arrays.asList;
 import static java.util.Collections.shuffle;
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.rabbitmq.actions.Domain.Decision;
 import com.rabbitmq.actions.Domain.PackageVersion;
+import com.rabbitmq.actions.RetentionEngine.Retention;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 
 public class PackagecloudDeletePackageActionTest {
@@ -98,7 +104,7 @@ public class PackagecloudDeletePackageActionTest {
   }
 
   @Test
-  void filterForDeletionShouldReturnVersionsToDelete() {
+  void keepLastNShouldReturnVersionsToDelete() {
     List<PackageVersion> versions =
         asList(
                 "1:22.0-1",
@@ -126,7 +132,7 @@ public class PackagecloudDeletePackageActionTest {
             .collect(toList());
 
     shuffle(versions);
-    assertThat(filterForDeletion(versions, 2, true))
+    assertThat(toDelete(versions, 2, true))
         .hasSize(versions.size() - 2)
         .containsExactlyInAnyOrder(
             "1:22.0-1",
@@ -149,15 +155,15 @@ public class PackagecloudDeletePackageActionTest {
             "1:22.3.4.9-1")
         .doesNotContain("1:22.3.4.15-1", "1:22.3.4.16-1");
 
-    assertThat(filterForDeletion(versions, versions.size() - 1, true))
+    assertThat(toDelete(versions, versions.size() - 1, true))
         .hasSize(1)
         .containsExactly("1:22.0-1");
 
-    assertThat(filterForDeletion(versions, 0, true))
+    assertThat(toDelete(versions, 0, true))
         .hasSameSizeAs(versions)
         .hasSameElementsAs(versions.stream().map(v -> v.version).collect(toList()));
 
-    assertThat(filterForDeletion(versions, versions.size() + 1, true)).isEmpty();
+    assertThat(toDelete(versions, versions.size() + 1, true)).isEmpty();
 
     versions =
         asList(
@@ -179,7 +185,7 @@ public class PackagecloudDeletePackageActionTest {
             .map(Domain.PackageVersion::new)
             .collect(toList());
     shuffle(versions);
-    assertThat(filterForDeletion(versions, 2, true))
+    assertThat(toDelete(versions, 2, true))
         .hasSize(versions.size() - 2)
         .containsExactlyInAnyOrder(
             "22.2.4-1.el8",
@@ -196,19 +202,19 @@ public class PackagecloudDeletePackageActionTest {
             "22.3.4.7-1.el8")
         .doesNotContain("22.3.4.12-1.el8", "22.3.4.16-1.el8");
 
-    assertThat(filterForDeletion(versions, versions.size() - 1, true))
+    assertThat(toDelete(versions, versions.size() - 1, true))
         .hasSize(1)
         .containsExactly("22.2.4-1.el8");
 
-    assertThat(filterForDeletion(versions, 0, true))
+    assertThat(toDelete(versions, 0, true))
         .hasSameSizeAs(versions)
         .hasSameElementsAs(versions.stream().map(v -> v.version).collect(toList()));
 
-    assertThat(filterForDeletion(versions, versions.size() + 1, true)).isEmpty();
+    assertThat(toDelete(versions, versions.size() + 1, true)).isEmpty();
   }
 
   @Test
-  void filterForDeletionShouldReturnVersionsToDeleteWhenUsingUploadingDate() {
+  void keepLastNShouldReturnVersionsToDeleteWhenUsingUploadingDate() {
     List<PackageVersion> versions =
         asList(
             pv("1.1", "2021-04-01"),
@@ -218,13 +224,13 @@ public class PackagecloudDeletePackageActionTest {
 
     shuffle(versions);
 
-    assertThat(filterForDeletion(versions, 2, false))
+    assertThat(toDelete(versions, 2, false))
         .hasSize(versions.size() - 2)
-        .containsExactly("1.1", "1.2");
+        .containsExactlyInAnyOrder("1.1", "1.2");
 
-    assertThat(filterForDeletion(versions, 1, false))
+    assertThat(toDelete(versions, 1, false))
         .hasSize(versions.size() - 1)
-        .containsExactly("1.1", "1.2", "1.3");
+        .containsExactlyInAnyOrder("1.1", "1.2", "1.3");
 
     versions =
         asList(
@@ -235,13 +241,13 @@ public class PackagecloudDeletePackageActionTest {
 
     shuffle(versions);
 
-    assertThat(filterForDeletion(versions, 2, false))
+    assertThat(toDelete(versions, 2, false))
         .hasSize(versions.size() - 2)
-        .containsExactly("1.1", "1.3");
+        .containsExactlyInAnyOrder("1.1", "1.3");
 
-    assertThat(filterForDeletion(versions, 2, true))
+    assertThat(toDelete(versions, 2, true))
         .hasSize(versions.size() - 2)
-        .containsExactly("1.1", "1.2");
+        .containsExactlyInAnyOrder("1.1", "1.2");
   }
 
   @Test
@@ -409,6 +415,78 @@ public class PackagecloudDeletePackageActionTest {
         .containsExactlyInAnyOrder("25.0.4-1.el8", "25.1.1-2.el8");
   }
 
+  @Test
+  void versionKeysShouldBeSharedAcrossPlanningStages() {
+    List<PackageVersion> detected =
+        versions("1:24.1.1-1, 1:24.1.3-1, 1:24.1.2-1, 1:24.3.1-1, 1:24.3-1, 1:24.2-1, 1:24.2.2-1")
+            .stream()
+            .map(PackageVersion::new)
+            .collect(toList());
+    VersionKeys versionKeys = new VersionKeys();
+    Map<String, Retention> retentions =
+        new RetentionEngine(
+                List.of(
+                    RetentionPolicy.keepLastN(detected, 2, true, versionKeys),
+                    RetentionPolicy.keepLatestPatchPerMinor("24.3", versionKeys)),
+                versionKeys)
+            .evaluate(detected);
+    assertThat(RetentionEngineTest.withDecision(retentions, Decision.KEEP_LATEST_MINOR_PATCH))
+        .containsExactlyInAnyOrder("1:24.1.3-1", "1:24.2.2-1");
+    // each version parsed once for all the policies
+    assertThat(versionKeys.size()).isEqualTo(detected.size());
+  }
+
+  @Test
+  void selectForDeletionShouldReturnTheSameVersionsAsFilterForDeletion() {
+    Random random = new Random(42);
+    for (int run = 0; run < 50; run++) {
+      List<PackageVersion> versions = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        // duplicate dates to check ties
+        versions.add(
+            pv(
+                "1:" + random.nextInt(30) + "." + random.nextInt(5) + "." + i + "-1",
+                "2021-04-0" + (1 + random.nextInt(9))));
+      }
+      for (int keepLastN : new int[] {0, 1, 3, 10, 199, 200, 201}) {
+        for (boolean orderByVersion : new boolean[] {true, false}) {
+          List<String> selected =
+              selectForDeletion(versions, keepLastN, orderByVersion, new VersionKeys());
+          List<String> filtered = filterForDeletion(versions, keepLastN, orderByVersion);
+          assertThat(selected).containsExactlyInAnyOrderElementsOf(filtered);
+          List<String> inputOrder =
+              versions.stream().map(v -> v.version).filter(selected::contains).collect(toList());
+          assertThat(selected).isEqualTo(inputOrder);
+        }
+      }
+    }
+  }
+
+  @Test
+  void extractMinorShouldRemoveEpochReleaseAndPatches() {
+    assertThat(VersionKeys.minor("1:22.3.4.3-1")).isEqualTo("22.3");
+    assertThat(VersionKeys.minor("22.3-1.el8")).isEqualTo("22.3");
+    assertThat(VersionKeys.minor("22.3")).isEqualTo("22.3");
+    assertThat(VersionKeys.minor("22")).isEqualTo("22");
+    assertThat(VersionKeys.minor("22.")).isEqualTo("22.");
+  }
+
+  // the versions deleted by keep_last_n alone, in input order
+  private static List<String> toDelete(
+      List<PackageVersion> versions, int keepLastN, boolean orderByVersion) {
+    VersionKeys versionKeys = new VersionKeys();
+    Map<String, Retention> retentions =
+        new RetentionEngine(
+                List.of(
+                    RetentionPolicy.keepLastN(versions, keepLastN, orderByVersion, versionKeys)),
+                versionKeys)
+            .evaluate(versions);
+    return versions.stream()
+        .map(v -> v.version)
+        .filter(v -> retentions.get(v).decision() == Decision.DELETE)
+        .collect(toList());
+  }
+
   static List<String> versions(String line) {
     List<String> versions = Arrays.stream(line.split(",")).map(String::trim).collect(toList());
     Collections.shuffle(versions);
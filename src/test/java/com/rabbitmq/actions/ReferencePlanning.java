@@ -0,0 +1,91 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static java.util.stream.Collectors.toList;
+
+import com.rabbitmq.actions.Domain.PackageVersion;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// the planning before RetentionEngine and PackageTable, to check them and benchmark them against
+final class ReferencePlanning {
+
+  private ReferencePlanning() {}
+
+  static List<String> filterForDeletion(
+      Collection<PackageVersion> versions, int keepLastN, boolean orderByVersion) {
+    return filterForDeletion(versions, keepLastN, orderByVersion, new VersionKeys());
+  }
+
+  static List<String> filterForDeletion(
+      Collection<PackageVersion> versions,
+      int keepLastN,
+      boolean orderByVersion,
+      VersionKeys versionKeys) {
+    if (versions.isEmpty()) {
+      return Collections.emptyList();
+    } else if (keepLastN <= 0) {
+      // do not want to keep any, return all
+      return versions.stream().map(v -> v.version).collect(toList());
+    } else if (keepLastN >= versions.size()) {
+      // we want to keep more than we have, so nothing to delete
+      return Collections.emptyList();
+    } else {
+      Comparator<PackageVersion> comparator =
+          orderByVersion
+              ? Comparator.comparing(packageVersion -> versionKeys.get(packageVersion.version))
+              : Comparator.comparing(packageVersion -> packageVersion.lastPackageDate);
+      return versions.stream()
+          .sorted(comparator)
+          .limit(versions.size() - keepLastN)
+          .map(v -> v.version)
+          .collect(toList());
+    }
+  }
+
+  static String latestMinor(List<String> versions) {
+    return latestMinor(versions, new VersionKeys());
+  }
+
+  static String latestMinor(List<String> versions, VersionKeys versionKeys) {
+    if (versions == null || versions.isEmpty()) {
+      return null;
+    } else {
+      return versions.stream()
+          .map(v -> versionKeys.get(v).minor())
+          .distinct()
+          .max(versionKeys.comparator())
+          .get();
+    }
+  }
+
+  static List<String> lastMinorPatches(String minorToIgnore, List<String> versions) {
+    return lastMinorPatches(minorToIgnore, versions, new VersionKeys());
+  }
+
+  static List<String> lastMinorPatches(
+      String minorToIgnore, List<String> versions, VersionKeys versionKeys) {
+    if (versions == null || versions.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Map<String, VersionKeys.VersionKey> lastPatches = new HashMap<>();
+    for (String version : versions) {
+      VersionKeys.VersionKey key = versionKeys.get(version);
+      if (!key.minor().equals(minorToIgnore)) {
+        lastPatches.merge(
+            key.minor(),
+            key,
+            (current, candidate) -> candidate.compareTo(current) > 0 ? candidate : current);
+      }
+    }
+    return lastPatches.values().stream().map(VersionKeys.VersionKey::version).collect(toList());
+  }
+}
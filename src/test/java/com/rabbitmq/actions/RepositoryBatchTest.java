@@ -0,0 +1,133 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+public class RepositoryBatchTest {
+
+  @Test
+  void repositoriesShouldBeParsedFromJson() {
+    List<Map<String, String>> repositories =
+        RepositoryBatch.parse(
+            "[{\"repository\": \"erlang\", \"globs\": \"*.rpm\", \"keep_last_n\": 2},"
+                + " {\"repository\": \"rabbitmq-server\", \"do_delete\": true}]");
+    assertThat(repositories).hasSize(2);
+    assertThat(repositories.get(0))
+        .containsEntry("repository", "erlang")
+        .containsEntry("globs", "*.rpm")
+        .containsEntry("keep_last_n", "2");
+    assertThat(repositories.get(1)).containsEntry("do_delete", "true");
+
+    assertThatThrownBy(() -> RepositoryBatch.parse("[{\"globs\": \"*.rpm\"}]"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+            () ->
+                RepositoryBatch.parse(
+                    "[{\"repository\": \"erlang\", \"globs\": \"*.rpm\"},"
+                        + " {\"repository\": \"erlang\", \"globs\": \"*.deb\"}]"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("erlang");
+  }
+
+  @Test
+  void repositoryInputsShouldOverrideActionInputs() {
+    Map<String, String> defaults =
+        Map.of(
+            "globs",
+            "*.deb",
+            "keep_last_n",
+            "1",
+            "state_file",
+            "state.json",
+            "plan_file",
+            "plan.json",
+            "journal_file",
+            "journal");
+    Function<String, String> inputs =
+        RepositoryBatch.inputs(Map.of("repository", "erlang", "globs", "*.rpm"), defaults::get);
+    assertThat(inputs.apply("repository")).isEqualTo("erlang");
+    assertThat(inputs.apply("globs")).isEqualTo("*.rpm");
+    assertThat(inputs.apply("keep_last_n")).isEqualTo("1");
+    assertThat(inputs.apply("version_filter")).isNull();
+    // a state file, a plan and a journal per repository
+    assertThat(inputs.apply("state_file")).isEqualTo("state.json-erlang");
+    assertThat(inputs.apply("plan_file")).isEqualTo("plan.json-erlang");
+    assertThat(inputs.apply("journal_file")).isEqualTo("journal-erlang");
+  }
+
+  @Test
+  void repositoriesShouldBeProcessedConcurrentlyUpToTheLimit() {
+    List<Map<String, String>> repositories =
+        List.of(
+            Map.of("repository", "r1"),
+            Map.of("repository", "r2"),
+            Map.of("repository", "r3"),
+            Map.of("repository", "r4"),
+            Map.of("repository", "r5"));
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    List<RepositoryBatch.Summary> summaries =
+        new RepositoryBatch(2)
+            .run(
+                repositories,
+                name -> null,
+                inputs -> {
+                  maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                  try {
+                    Thread.sleep(50);
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  } finally {
+                    inFlight.decrementAndGet();
+                  }
+                  if ("r3".equals(inputs.apply("repository"))) {
+                    throw new IllegalStateException("listing failed");
+                  }
+                  return new RepositoryBatch.Summary(inputs.apply("repository"), 1, 0, null);
+                });
+    assertThat(maxInFlight.get()).isEqualTo(2);
+    assertThat(summaries)
+        .extracting(RepositoryBatch.Summary::repository)
+        .containsExactly("r1", "r2", "r3", "r4", "r5");
+    assertThat(summaries.get(2).error()).isEqualTo("listing failed");
+    assertThat(summaries.get(4).deleted()).isEqualTo(1);
+  }
+
+  @Test
+  void outputShouldBePrefixedAndPrintedAsItComes() {
+    PrintStream out = System.out;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+    try {
+      new RepositoryBatch(1)
+          .run(
+              List.of(Map.of("repository", "erlang")),
+              name -> null,
+              inputs -> {
+                LogUtils.log("listing%ndone");
+                // not held until the repository is done
+                assertThat(output.toString(StandardCharsets.UTF_8))
+                    .contains("[erlang] listing" + System.lineSeparator() + "[erlang] done");
+                return new RepositoryBatch.Summary("erlang", 0, 0, null);
+              });
+    } finally {
+      System.setOut(out);
+    }
+    assertThat(output.toString(StandardCharsets.UTF_8))
+        .startsWith("[erlang] " + LogUtils.green("Repository erlang"));
+  }
+}
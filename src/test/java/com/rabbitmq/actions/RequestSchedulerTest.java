@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class RequestSchedulerTest {
+
+  @Test
+  void retryAfterShouldSupportSecondsAndDates() {
+    assertThat(RequestScheduler.retryAfter(headers("Retry-After", "120")))
+        .hasValue(Duration.ofSeconds(120));
+    String date =
+        DateTimeFormatter.RFC_1123_DATE_TIME.format(
+            ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+    assertThat(RequestScheduler.retryAfter(headers("Retry-After", date)))
+        .hasValueSatisfying(d -> assertThat(d).isBetween(Duration.ZERO, Duration.ofSeconds(30)));
+    assertThat(RequestScheduler.retryAfter(headers("Retry-After", "soon"))).isEmpty();
+    assertThat(RequestScheduler.retryAfter(headers())).isEmpty();
+  }
+
+  @Test
+  void tooManyRequestsShouldSlowDownAndPause() {
+    RequestScheduler scheduler = new RequestScheduler(20);
+    scheduler.observe(429, headers("Retry-After", "2"));
+    assertThat(scheduler.rate()).isEqualTo(10);
+    assertThat(scheduler.pause()).isBetween(Duration.ofSeconds(1), Duration.ofSeconds(2));
+    // after the back-off
+    scheduler = new RequestScheduler(20);
+    scheduler.observe(429, headers("Retry-After", "0"));
+    scheduler.observe(429, headers());
+    assertThat(scheduler.rate()).isEqualTo(5);
+  }
+
+  @Test
+  void concurrentTooManyRequestsShouldSlowDownOnce() throws Exception {
+    RequestScheduler scheduler = new RequestScheduler(16);
+    List<Thread> threads =
+        IntStream.range(0, 8)
+            .mapToObj(
+                i ->
+                    Thread.ofVirtual()
+                        .start(() -> scheduler.observe(429, headers("Retry-After", "1"))))
+            .toList();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(scheduler.rate()).isEqualTo(8);
+    assertThat(scheduler.pause()).isGreaterThan(Duration.ZERO);
+  }
+
+  @Test
+  void successfulResponsesShouldSpeedUpToTheMaximum() {
+    RequestScheduler scheduler = new RequestScheduler(20);
+    scheduler.observe(429, headers("Retry-After", "0"));
+    scheduler.observe(200, headers());
+    assertThat(scheduler.rate()).isEqualTo(12);
+    for (int i = 0; i < 20; i++) {
+      scheduler.observe(200, headers());
+    }
+    assertThat(scheduler.rate()).isEqualTo(20);
+  }
+
+  @Test
+  void rateLimitHeadersShouldSpreadTheRemainingBudget() {
+    RequestScheduler scheduler = new RequestScheduler(20);
+    scheduler.observe(200, headers("X-RateLimit-Remaining", "30", "X-RateLimit-Reset", "10"));
+    assertThat(scheduler.rate()).isEqualTo(3);
+    scheduler.observe(200, headers("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "5"));
+    assertThat(scheduler.pause()).isBetween(Duration.ofSeconds(4), Duration.ofSeconds(5));
+  }
+
+  @Test
+  void defaultSchedulerShouldNotPaceUntilRateLimited() throws Exception {
+    RequestScheduler scheduler = new RequestScheduler();
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; i++) {
+      scheduler.acquire();
+    }
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+    assertThat(scheduler.rate()).isInfinite();
+    scheduler.observe(200, headers());
+    assertThat(scheduler.rate()).isInfinite();
+
+    // halving the rate the requests were sent at, then speeding up step by step
+    scheduler.observe(429, headers("Retry-After", "0"));
+    assertThat(scheduler.rate()).isEqualTo(500);
+    scheduler.observe(200, headers());
+    assertThat(scheduler.rate()).isEqualTo(501);
+  }
+
+  @Test
+  void acquireShouldPaceRequests() throws Exception {
+    RequestScheduler scheduler = new RequestScheduler(50);
+    long start = System.nanoTime();
+    // the bucket starts full, the next 25 requests take at least 0.5 second
+    for (int i = 0; i < 75; i++) {
+      scheduler.acquire();
+    }
+    assertThat(Duration.ofNanos(System.nanoTime() - start))
+        .isGreaterThanOrEqualTo(Duration.ofMillis(450));
+  }
+
+  static HttpHeaders headers(String... keyValues) {
+    Map<String, List<String>> headers = new LinkedHashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      headers.put(keyValues[i], List.of(keyValues[i + 1]));
+    }
+    return HttpHeaders.of(headers, (k, v) -> true);
+  }
+}
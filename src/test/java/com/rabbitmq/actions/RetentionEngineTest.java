@@ -0,0 +1,151 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static com.rabbitmq.actions.PackagecloudDeletePackageActionTest.pv;
+import static com.rabbitmq.actions.PackagecloudDeletePackageActionTest.versions;
+import static com.rabbitmq.actions.ReferencePlanning.filterForDeletion;
+import static com.rabbitmq.actions.ReferencePlanning.lastMinorPatches;
+import static com.rabbitmq.actions.ReferencePlanning.latestMinor;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.rabbitmq.actions.Domain.Decision;
+import com.rabbitmq.actions.Domain.PackageVersion;
+import com.rabbitmq.actions.RetentionEngine.Retention;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class RetentionEngineTest {
+
+  VersionKeys versionKeys = new VersionKeys();
+
+  @Test
+  void keepLastNAndMinorPatchesShouldMatchThePreviousPlanning() {
+    List<String> detected =
+        versions(
+            "25.1-1.el8, 25.1.1-1.el8, 25.0.1-1.el8, 25.0.2-1.el8, 25.1.2-1.el8, "
+                + "25.0.3-1.el8, 25.0-1.el8, 25.0.4-1.el8, 25.2-1.el8, 25.1.1-2.el8, "
+                + "24.3.4-1.el8, 24.3.5-1.el8");
+    List<PackageVersion> versions = detected.stream().map(PackageVersion::new).collect(toList());
+    for (int keepLastN = 0; keepLastN <= detected.size(); keepLastN++) {
+      List<String> toDelete = filterForDeletion(versions, keepLastN, true);
+      List<String> exceptions = lastMinorPatches(latestMinor(detected), toDelete);
+
+      Map<String, Retention> retentions =
+          new RetentionEngine(
+                  List.of(
+                      RetentionPolicy.keepLastN(versions, keepLastN, true, versionKeys),
+                      RetentionPolicy.keepLatestPatchPerMinor(
+                          latestMinor(detected, versionKeys), versionKeys)),
+                  versionKeys)
+              .evaluate(versions);
+
+      assertThat(withDecision(retentions, Decision.DELETE))
+          .containsExactlyInAnyOrderElementsOf(
+              toDelete.stream().filter(v -> !exceptions.contains(v)).toList());
+      assertThat(withDecision(retentions, Decision.KEEP_LATEST_MINOR_PATCH))
+          .containsExactlyInAnyOrderElementsOf(exceptions);
+    }
+  }
+
+  @Test
+  void firstPolicyKeepingAVersionShouldGiveTheReason() {
+    List<PackageVersion> versions =
+        List.of(
+            pv("24.3.4-1", "2024-01-01"),
+            pv("25.0.1-1", "2024-02-01"),
+            pv("25.2.1-1", "2024-03-01"),
+            pv("25.2.2-1", "2024-04-01"),
+            pv("26.0-1", "2024-05-01"),
+            pv("26.1-1", "2024-06-01"));
+    Map<String, Retention> retentions =
+        new RetentionEngine(
+                List.of(
+                    RetentionPolicy.keepLastN(versions, 1, true, versionKeys),
+                    RetentionPolicy.keepLatestPerMajor(versionKeys),
+                    RetentionPolicy.keepNewerThan(
+                        Duration.ofDays(45), ZonedDateTime.parse("2024-06-10T00:00:00Z")),
+                    RetentionPolicy.keepMatching("^24\\.")),
+                versionKeys)
+            .evaluate(versions);
+
+    assertThat(retentions.get("26.1-1").reason()).isEqualTo("last 1 version(s)");
+    // 26.1-1 is kept by keep_last_n, it is also the latest of major 26
+    assertThat(retentions.get("26.0-1").reason()).isEqualTo("newer than 45 day(s)");
+    assertThat(retentions.get("25.2.2-1").reason()).isEqualTo("latest of major 25");
+    assertThat(retentions.get("25.2.1-1").decision()).isEqualTo(Decision.DELETE);
+    assertThat(retentions.get("25.0.1-1").decision()).isEqualTo(Decision.DELETE);
+    assertThat(retentions.get("24.3.4-1").reason()).isEqualTo("latest of major 24");
+
+    retentions =
+        new RetentionEngine(
+                List.of(
+                    RetentionPolicy.keepLastN(versions, 1, true, versionKeys),
+                    RetentionPolicy.keepNewerThan(
+                        Duration.ofDays(45), ZonedDateTime.parse("2024-06-10T00:00:00Z")),
+                    RetentionPolicy.keepMatching("^24\\.")),
+                versionKeys)
+            .evaluate(versions);
+    assertThat(retentions.get("26.0-1").reason()).isEqualTo("newer than 45 day(s)");
+    assertThat(retentions.get("25.2.2-1").decision()).isEqualTo(Decision.DELETE);
+    assertThat(retentions.get("24.3.4-1").reason()).isEqualTo("pinned");
+    assertThat(withDecision(retentions, Decision.DELETE))
+        .containsExactlyInAnyOrder("25.0.1-1", "25.2.1-1", "25.2.2-1");
+  }
+
+  @Test
+  void versionKeptByAPreviousPolicyShouldBeTheLatestOfItsMajor() {
+    List<PackageVersion> versions =
+        List.of(
+            pv("26.2.1", "2024-04-01"),
+            pv("26.1.1", "2024-03-01"),
+            pv("25.3.1", "2024-02-01"),
+            pv("25.2.1", "2024-01-01"));
+    Map<String, Retention> retentions =
+        new RetentionEngine(
+                List.of(
+                    RetentionPolicy.keepLastN(versions, 1, true, versionKeys),
+                    RetentionPolicy.keepLatestPerMajor(versionKeys)),
+                versionKeys)
+            .evaluate(versions);
+
+    assertThat(retentions.get("26.2.1").reason()).isEqualTo("last 1 version(s)");
+    assertThat(retentions.get("25.3.1").reason()).isEqualTo("latest of major 25");
+    assertThat(withDecision(retentions, Decision.DELETE))
+        .containsExactlyInAnyOrder("26.1.1", "25.2.1");
+
+    // same with the latest minor patches kept before the latest of each major
+    retentions =
+        new RetentionEngine(
+                List.of(
+                    RetentionPolicy.keepLastN(versions, 1, true, versionKeys),
+                    RetentionPolicy.keepLatestPatchPerMinor("26.2", versionKeys),
+                    RetentionPolicy.keepLatestPerMajor(versionKeys)),
+                versionKeys)
+            .evaluate(versions);
+    assertThat(retentions.get("26.1.1").reason()).isEqualTo(RetentionPolicy.LATEST_MINOR_PATCH);
+    assertThat(retentions.get("25.3.1").reason()).isEqualTo(RetentionPolicy.LATEST_MINOR_PATCH);
+    assertThat(retentions.get("25.2.1").reason()).isEqualTo(RetentionPolicy.LATEST_MINOR_PATCH);
+  }
+
+  @Test
+  void noPolicyShouldDeleteEverything() {
+    List<PackageVersion> versions = List.of(pv("1.0", "2024-01-01"), pv("1.1", "2024-01-02"));
+    assertThat(new RetentionEngine(List.of(), versionKeys).evaluate(versions))
+        .allSatisfy((version, retention) -> assertThat(retention).isEqualTo(Retention.DELETE));
+  }
+
+  static List<String> withDecision(Map<String, Retention> retentions, Decision decision) {
+    return retentions.entrySet().stream()
+        .filter(e -> e.getValue().decision() == decision)
+        .map(Map.Entry::getKey)
+        .toList();
+  }
+}
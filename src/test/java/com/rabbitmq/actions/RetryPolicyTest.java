@@ -0,0 +1,114 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class RetryPolicyTest {
+
+  RetryPolicy policy =
+      new RetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(50), Duration.ofSeconds(10));
+
+  @Test
+  void retryableErrorsShouldBeRetriedUntilSuccess() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    String result =
+        policy.execute(
+            "test",
+            () -> {
+              if (attempts.incrementAndGet() < 3) {
+                throw new HttpTimeoutException("timeout");
+              }
+              return "ok";
+            });
+    assertThat(result).isEqualTo("ok");
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void retryableErrorsShouldFailAfterMaxAttempts() {
+    AtomicInteger attempts = new AtomicInteger();
+    assertThatThrownBy(
+            () ->
+                policy.execute(
+                    "test",
+                    () -> {
+                      attempts.incrementAndGet();
+                      throw new HttpTimeoutException("timeout");
+                    }))
+        .isInstanceOf(HttpTimeoutException.class);
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void finalErrorsShouldNotBeRetried() {
+    AtomicInteger attempts = new AtomicInteger();
+    assertThatThrownBy(
+            () ->
+                policy.execute(
+                    "test",
+                    () -> {
+                      attempts.incrementAndGet();
+                      throw new IllegalStateException("Unexpected response code 403");
+                    }))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void timeBudgetShouldStopRetries() {
+    RetryPolicy budgeted =
+        new RetryPolicy(10, Duration.ofMillis(100), Duration.ofMillis(100), Duration.ZERO);
+    AtomicInteger attempts = new AtomicInteger();
+    assertThatThrownBy(
+            () ->
+                budgeted.execute(
+                    "test",
+                    () -> {
+                      attempts.incrementAndGet();
+                      Thread.sleep(5);
+                      throw new HttpTimeoutException("timeout");
+                    }))
+        .isInstanceOf(HttpTimeoutException.class);
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void delayShouldBeExponentialAndCapped() {
+    for (int i = 0; i < 100; i++) {
+      assertThat(policy.delay(1, new HttpTimeoutException("")))
+          .isBetween(Duration.ZERO, Duration.ofMillis(10));
+      assertThat(policy.delay(3, new HttpTimeoutException("")))
+          .isBetween(Duration.ZERO, Duration.ofMillis(40));
+      assertThat(policy.delay(10, new HttpTimeoutException("")))
+          .isBetween(Duration.ZERO, Duration.ofMillis(50));
+    }
+  }
+
+  @Test
+  void wrappedIOExceptionsShouldBeRetryable() {
+    assertThat(RetryPolicy.isRetryable(new UncheckedIOException(new IOException("reset"))))
+        .isTrue();
+    assertThat(RetryPolicy.isRetryable(new IllegalStateException("403"))).isFalse();
+  }
+
+  @Test
+  void statusCodesShouldBeClassified() {
+    assertThat(RetryPolicy.isRetryable(429)).isTrue();
+    assertThat(RetryPolicy.isRetryable(500)).isTrue();
+    assertThat(RetryPolicy.isRetryable(503)).isTrue();
+    assertThat(RetryPolicy.isRetryable(404)).isFalse();
+    assertThat(RetryPolicy.isRetryable(403)).isFalse();
+  }
+}
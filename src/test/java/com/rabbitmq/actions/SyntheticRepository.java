@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import com.rabbitmq.actions.Domain.PackageVersion;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// packages of an Erlang-like repository, the same for a given size
+final class SyntheticRepository {
+
+  // each version has a few packages, e.g. one per distribution
+  private static final int PACKAGES_PER_VERSION = 4;
+  private static final String[] DISTRIBUTIONS = {"el8", "el9", "jammy", "bookworm"};
+  private static final ZonedDateTime START = ZonedDateTime.parse("2020-01-01T00:00:00Z");
+
+  private SyntheticRepository() {}
+
+  // e.g. 26.2.5.1234, 1 version out of 10 with an epoch and a release, e.g. 1:26.2.5.1234-1
+  static List<String> versions(int count) {
+    Random random = new Random(42);
+    List<String> versions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String version =
+          (20 + random.nextInt(8)) + "." + random.nextInt(4) + "." + random.nextInt(10) + "." + i;
+      versions.add(random.nextInt(10) == 0 ? "1:" + version + "-1" : version);
+    }
+    return versions;
+  }
+
+  // the JSON of a listing with all the packages in one array
+  static byte[] json(int packageCount) {
+    Random random = new Random(42);
+    List<String> versions = versions(packageCount / PACKAGES_PER_VERSION + 1);
+    DateTimeFormatter formatter = DateTimeFormatter.ISO_ZONED_DATE_TIME;
+    StringBuilder json = new StringBuilder(packageCount * 300).append('[');
+    for (int i = 0; i < packageCount; i++) {
+      String version = versions.get(i / PACKAGES_PER_VERSION);
+      String distribution = DISTRIBUTIONS[i % DISTRIBUTIONS.length];
+      String filename =
+          distribution.startsWith("el")
+              ? "erlang-" + version + "-1." + distribution + ".x86_64.rpm"
+              : "erlang-base_" + version + "-1~" + distribution + "_amd64.deb";
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"name\":\"erlang\",\"filename\":\"")
+          .append(filename)
+          .append("\",\"version\":\"")
+          .append(version)
+          .append("\",\"created_at\":\"")
+          .append(formatter.format(START.plusMinutes(random.nextInt(packageCount) + i)))
+          .append("\",\"package_url\":\"/api/v1/repos/rabbitmq/erlang/package/")
+          .append(i)
+          .append("\",\"destroy_url\":\"/api/v1/repos/rabbitmq/erlang/")
+          .append(distribution)
+          .append('/')
+          .append(filename)
+          .append("\"}");
+    }
+    return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  static List<Domain.Package> packages(int packageCount) {
+    List<Domain.Package> packages = new ArrayList<>(packageCount);
+    try {
+      Utils.decodePackages(new ByteArrayInputStream(json(packageCount)), packages::add);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return packages;
+  }
+
+  // the planning input of a repository of versionCount versions, without generating its packages
+  static List<PackageVersion> packageVersions(int versionCount) {
+    Random random = new Random(42);
+    List<PackageVersion> result = new ArrayList<>(versionCount);
+    for (String version : versions(versionCount)) {
+      PackageVersion packageVersion = new PackageVersion(version);
+      packageVersion.lastPackageDate = START.plusMinutes(random.nextInt(versionCount));
+      result.add(packageVersion);
+    }
+    return result;
+  }
+
+  // like the action, one entry per version with the date of its latest package
+  static List<PackageVersion> packageVersions(List<Domain.Package> packages) {
+    Map<String, PackageVersion> versions = new LinkedHashMap<>();
+    for (Domain.Package p : packages) {
+      versions.computeIfAbsent(p.version(), PackageVersion::new).consider(p);
+    }
+    return new ArrayList<>(versions.values());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.rabbitmq.actions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.junit.jupiter.api.Test;
+
+public class VersionFilterTest {
+
+  static final List<String> FILTERS =
+      List.of(
+          "^25\\.*",
+          "^25\\.1\\.*",
+          "^1:26\\.2",
+          "^25\\.|^26\\.2",
+          "26.2",
+          "^26.2.5$",
+          "-1$",
+          "rc",
+          "^3\\.13\\.0-RC",
+          "^25\\.1?",
+          "^2[56]\\.",
+          "\\d+\\.el8",
+          "^25\\.1\\|",
+          "a\\\\|b",
+          "^26\\.2\\.5-1$|^27",
+          "|",
+          "");
+
+  static final List<String> VERSIONS =
+      List.of(
+          "25.0",
+          "25.1.2-1",
+          "25",
+          "250.1",
+          "1:26.2.5-1",
+          "26.2.5",
+          "26.2.5-1",
+          "26.2.5.3-1",
+          "26.3",
+          "27.0-1.el8",
+          "3.13.0-rc.1",
+          "3.13.0-RC.1",
+          "a\\",
+          "b",
+          "26.2.5\n",
+          "");
+
+  @Test
+  void matchesShouldBehaveLikeRegexFind() {
+    for (String filter : FILTERS) {
+      VersionFilter versionFilter = VersionFilter.compile(filter);
+      Pattern pattern = Pattern.compile(filter, Pattern.CASE_INSENSITIVE);
+      for (String version : VERSIONS) {
+        boolean expected = pattern.matcher(version).find();
+        assertThat(versionFilter.matches(version))
+            .as("%s matching %s", filter, version)
+            .isEqualTo(expected);
+        // memoized result
+        assertThat(versionFilter.matches(version)).isEqualTo(expected);
+      }
+    }
+  }
+
+  @Test
+  void literalFiltersShouldNotUseRegex() {
+    assertThat(VersionFilter.compile("^25\\.*").isLiteral()).isTrue();
+    assertThat(VersionFilter.compile("^1:26\\.2").isLiteral()).isTrue();
+    assertThat(VersionFilter.compile("^25\\.|^26\\.2").isLiteral()).isTrue();
+    assertThat(VersionFilter.compile("^26.2.5$").isLiteral()).isTrue();
+    assertThat(VersionFilter.compile("^2[56]\\.").isLiteral()).isFalse();
+    assertThat(VersionFilter.compile("^25\\.1?").isLiteral()).isTrue();
+    assertThat(VersionFilter.compile("^25\\.1?$").isLiteral()).isFalse();
+    assertThat(VersionFilter.compile("\\d+\\.el8").isLiteral()).isFalse();
+  }
+
+  @Test
+  void invalidFiltersShouldBeRejected() {
+    assertThatThrownBy(() -> VersionFilter.compile("^25\\.("))
+        .isInstanceOf(PatternSyntaxException.class);
+  }
+}